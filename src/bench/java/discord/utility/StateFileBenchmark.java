@@ -0,0 +1,240 @@
+package discord.utility;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * compares the old way of saving the state (an ObjectOutputStream per store, with the ids as strings)
+ * with the binary format of StateFile, for a lot of synthetic guilds
+ * every guild has a joinChannel, a prefix, some emojiRoles and some reactors per emoji
+ * the stores are saved and loaded a few times, and the best run of each is printed together with the size of the files
+ *
+ * the loaded state goes into the same kind of maps MemManager loads it into (e.g.: the prefixes into a SnowflakeMap)
+ *
+ * it only needs the StateFile, the ReactorSet and the SnowflakeMap, so it runs without the rest of the bot:
+ * javac -d out src/main/java/discord/utility/StateFile.java src/main/java/discord/utility/ReactorSet.java
+ *        src/main/java/discord/utility/SnowflakeMap.java src/bench/java/discord/utility/StateFileBenchmark.java
+ * java -cp out discord.utility.StateFileBenchmark [guilds] [runs]
+ */
+public class StateFileBenchmark {
+
+	private static final int DEFAULT_GUILDS = 10_000;
+	private static final int DEFAULT_RUNS = 7;
+	private static final String[] EMOJIS = {"😀", "🎮", "🎵", "⚔️", "📚"};
+	private static final int REACTORS_PER_EMOJI = 40;
+
+	//the state in the current form, by the id of the guild
+	private final Map<Long, Long> joinChannels = new HashMap<>();
+	private final Map<Long, String> prefixes = new HashMap<>();
+	private final Map<Long, Map<String, Long>> emojiRoles = new HashMap<>();
+	private final Map<Long, Map<String, ReactorSet>> emojiReactors = new HashMap<>();
+
+	//the same state in the old form, like it was written with the ObjectOutputStream
+	private final Map<String, String> legacyJoinChannels = new HashMap<>();
+	private final Map<String, String> legacyPrefixes = new HashMap<>();
+	private final Map<String, Map<String, String>> legacyEmojiRoles = new HashMap<>();
+	private final Map<String, Map<String, List<String>>> legacyEmojiReactors = new HashMap<>();
+
+	public static void main(String[] args) throws Exception {
+		int guilds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GUILDS;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+		File folder = Files.createTempDirectory("statefile-benchmark").toFile();
+
+		StateFileBenchmark benchmark = new StateFileBenchmark(guilds);
+		List<File> legacyFiles = files(folder, "legacy", 4);
+		List<File> stateFiles = files(folder, "state", 4);
+		long legacySave = Long.MAX_VALUE, legacyLoad = Long.MAX_VALUE, stateSave = Long.MAX_VALUE, stateLoad = Long.MAX_VALUE;
+		for(int run = 0; run < runs; run++){
+			long start = System.nanoTime();
+			benchmark.saveLegacy(legacyFiles);
+			legacySave = Math.min(legacySave, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			benchmark.loadLegacy(legacyFiles);
+			legacyLoad = Math.min(legacyLoad, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			benchmark.saveState(stateFiles);
+			stateSave = Math.min(stateSave, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			benchmark.loadState(stateFiles);
+			stateLoad = Math.min(stateLoad, System.nanoTime() - start);
+		}
+
+		System.out.printf("%d guilds, best of %d runs%n", guilds, runs);
+		System.out.printf("ObjectOutputStream: save %5d ms, load %5d ms, %.1f MB%n",
+				legacySave / 1_000_000, legacyLoad / 1_000_000, size(legacyFiles) / 1e6);
+		System.out.printf("StateFile:          save %5d ms, load %5d ms, %.1f MB%n",
+				stateSave / 1_000_000, stateLoad / 1_000_000, size(stateFiles) / 1e6);
+
+		legacyFiles.forEach(File::delete);
+		stateFiles.forEach(File::delete);
+		folder.delete();
+	}
+
+	/**
+	 * makes the synthetic state, always the same for the same amount of guilds
+	 * @param guilds the amount of guilds
+	 */
+	private StateFileBenchmark(int guilds){
+		Random random = new Random(42);
+		for(int i = 0; i < guilds; i++){
+			long guildId = 700_000_000_000_000_000L + random.nextInt(1 << 30) * 1000L + i;
+			joinChannels.put(guildId, guildId + 1);
+			legacyJoinChannels.put(Long.toString(guildId), Long.toString(guildId + 1));
+			prefixes.put(guildId, "!");
+			legacyPrefixes.put(Long.toString(guildId), "!");
+
+			Map<String, Long> guildEmojiRoles = new HashMap<>();
+			Map<String, String> legacyGuildEmojiRoles = new HashMap<>();
+			Map<String, ReactorSet> guildEmojiReactors = new HashMap<>();
+			Map<String, List<String>> legacyGuildEmojiReactors = new HashMap<>();
+			for(int e = 0; e < EMOJIS.length; e++){
+				long roleId = guildId + 10 + e;
+				guildEmojiRoles.put(EMOJIS[e], roleId);
+				legacyGuildEmojiRoles.put(EMOJIS[e], Long.toString(roleId));
+
+				long[] memberIds = new long[REACTORS_PER_EMOJI];
+				List<String> legacyMemberIds = new LinkedList<>();
+				for(int m = 0; m < memberIds.length; m++){
+					memberIds[m] = 300_000_000_000_000_000L + (random.nextLong() & ((1L << 50) - 1));
+					legacyMemberIds.add(Long.toString(memberIds[m]));
+				}
+				guildEmojiReactors.put(EMOJIS[e], ReactorSet.of(memberIds));
+				legacyGuildEmojiReactors.put(EMOJIS[e], legacyMemberIds);
+			}
+			emojiRoles.put(guildId, guildEmojiRoles);
+			legacyEmojiRoles.put(Long.toString(guildId), legacyGuildEmojiRoles);
+			emojiReactors.put(guildId, guildEmojiReactors);
+			legacyEmojiReactors.put(Long.toString(guildId), legacyGuildEmojiReactors);
+		}
+	}
+
+	//--------------------------------------------------ObjectOutputStream--------------------------------------------------
+
+	private void saveLegacy(List<File> files) throws IOException {
+		Object[] stores = {legacyJoinChannels, legacyPrefixes, legacyEmojiRoles, legacyEmojiReactors};
+		for(int i = 0; i < stores.length; i++){
+			try(ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(files.get(i)))){
+				oos.writeObject(stores[i]);
+			}
+		}
+	}
+
+	private void loadLegacy(List<File> files) throws IOException, ClassNotFoundException {
+		for(File file : files){
+			try(ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))){
+				ois.readObject();
+			}
+		}
+	}
+
+	//--------------------------------------------------StateFile--------------------------------------------------
+
+	private void saveState(List<File> files) throws IOException {
+		StateFile.write(files.get(0), out -> {
+			out.writeInt(joinChannels.size());
+			for(Map.Entry<Long, Long> entry : joinChannels.entrySet()){
+				out.writeLong(entry.getKey());
+				out.writeLong(entry.getValue());
+			}
+		});
+		StateFile.write(files.get(1), out -> {
+			out.writeInt(prefixes.size());
+			for(Map.Entry<Long, String> entry : prefixes.entrySet()){
+				out.writeLong(entry.getKey());
+				out.writeString(entry.getValue());
+			}
+		});
+		StateFile.write(files.get(2), out -> {
+			out.writeInt(emojiRoles.size());
+			for(Map.Entry<Long, Map<String, Long>> guild : emojiRoles.entrySet()){
+				out.writeLong(guild.getKey());
+				out.writeInt(guild.getValue().size());
+				for(Map.Entry<String, Long> entry : guild.getValue().entrySet()){
+					out.writeString(entry.getKey());
+					out.writeLong(entry.getValue());
+				}
+			}
+		});
+		StateFile.write(files.get(3), out -> {
+			out.writeInt(emojiReactors.size());
+			for(Map.Entry<Long, Map<String, ReactorSet>> guild : emojiReactors.entrySet()){
+				out.writeLong(guild.getKey());
+				out.writeInt(guild.getValue().size());
+				for(Map.Entry<String, ReactorSet> entry : guild.getValue().entrySet()){
+					out.writeString(entry.getKey());
+					out.writeIds(entry.getValue());
+				}
+			}
+		});
+	}
+
+	private void loadState(List<File> files) throws IOException {
+		StateFile.read(files.get(0), (in, version) -> {
+			int size = in.readSize();
+			Map<Long, Long> loaded = new HashMap<>(size * 2);
+			for(int i = 0; i < size; i++)
+				loaded.put(in.readLong(), in.readLong());
+			return loaded;
+		});
+		StateFile.read(files.get(1), (in, version) -> {
+			int size = in.readSize();
+			Map<Long, String> decoded = new HashMap<>(size * 2);
+			for(int i = 0; i < size; i++)
+				decoded.put(in.readLong(), in.readString());
+			SnowflakeMap<String> loaded = new SnowflakeMap<>();
+			loaded.putAll(decoded);
+			return loaded;
+		});
+		StateFile.read(files.get(2), (in, version) -> {
+			int size = in.readSize();
+			Map<Long, Map<String, Long>> loaded = new HashMap<>(size * 2);
+			for(int i = 0; i < size; i++){
+				long guildId = in.readLong();
+				int emojis = in.readSize();
+				Map<String, Long> guildEmojiRoles = new HashMap<>();
+				for(int e = 0; e < emojis; e++)
+					guildEmojiRoles.put(in.readString(), in.readLong());
+				loaded.put(guildId, guildEmojiRoles);
+			}
+			return loaded;
+		});
+		StateFile.read(files.get(3), (in, version) -> {
+			int size = in.readSize();
+			Map<Long, Map<String, ReactorSet>> loaded = new HashMap<>(size * 2);
+			for(int i = 0; i < size; i++){
+				long guildId = in.readLong();
+				int emojis = in.readSize();
+				Map<String, ReactorSet> guildEmojiReactors = new HashMap<>();
+				for(int e = 0; e < emojis; e++)
+					guildEmojiReactors.put(in.readString(), in.readIds());
+				loaded.put(guildId, guildEmojiReactors);
+			}
+			return loaded;
+		});
+	}
+
+	private static List<File> files(File folder, String name, int amount){
+		List<File> files = new ArrayList<>();
+		for(int i = 0; i < amount; i++)
+			files.add(new File(folder, name + i));
+		return files;
+	}
+
+	private static long size(List<File> files){
+		return files.stream().mapToLong(File::length).sum();
+	}
+}
@@ -4,7 +4,11 @@ import discord.bot.features.playlists.MusicHandler;
 import discord.logger.DiscordLogger;
 import discord.bot.features.RoleAssignHandler;
 import discord.bot.features.commands.CommandHandler;
+import discord.bot.features.commands.MessagePrefilter;
+import discord.bot.features.commands.StatsEndpoint;
 import discord.utility.BotUtility;
+import discord.utility.MemManager;
+import discord.utility.OutboundMessageService;
 
 import discord4j.common.util.Snowflake;
 import discord4j.core.DiscordClientBuilder;
@@ -18,8 +22,8 @@ import discord4j.core.event.domain.lifecycle.ReadyEvent;
 import discord4j.core.event.domain.message.*;
 import discord4j.core.object.entity.*;
 import discord4j.core.object.entity.channel.*;
-import discord4j.core.object.reaction.ReactionEmoji;
 
+import java.io.IOException;
 import java.util.Optional;
 
 public class SorakaBot {
@@ -28,6 +32,8 @@ public class SorakaBot {
 	private static User self;
 
 	private static DiscordLogger logger;
+	//sends the small replies of the bot, it merges the messages for the same channel
+	private static OutboundMessageService messageService;
 	private static CommandHandler commandHandler;
 	//the different features
 	private static RoleAssignHandler roleAssignHandler;
@@ -47,19 +53,45 @@ public class SorakaBot {
 		Guild dieLolMains = client.getGuildById(Snowflake.of(273116206314291210L)).block();
 		MessageChannel logChannel = (MessageChannel) BotUtility.getGuildChannelByName("soraka_bot_log", dieLolMains);
 		logger = new DiscordLogger(logChannel);
+		messageService = new OutboundMessageService(client, logger);
 
+		//the saved state of older versions has to be in the new format, before the handlers load it
+		MemManager.migrateLegacyFiles();
 		commandHandler = new CommandHandler(logger, client);
 		roleAssignHandler = new RoleAssignHandler(logger, client);
 		musicHandler = new MusicHandler();
 		//adding the commands
 		commandHandler.addCommands(roleAssignHandler.getCommands());
 		commandHandler.addCommands(musicHandler.getCommands());
+		//the role queue and the persistence show up in the stats too
+		commandHandler.getMetrics().addSource(roleAssignHandler.getRoleMutationQueue()::render);
+		commandHandler.getMetrics().addSource(MemManager.getPersistence()::render);
+		//and how long the loading of the saved state took
+		commandHandler.getMetrics().addSource(MemManager::renderLoadTimes);
+		//the metrics of the commands can also be pulled locally, if a port is set
+		startStatsEndpoint();
 
 		initEvents();
 
 		client.onDisconnect().block();
 	}
 
+	/**
+	 * starts the local endpoint for the command metrics (http://localhost:$STATS_PORT/stats)
+	 * only if the environment variable STATS_PORT is set
+	 */
+	private static void startStatsEndpoint(){
+		String port = System.getenv("STATS_PORT");
+		if(port == null)
+			return;
+		try {
+			new StatsEndpoint(Integer.parseInt(port), commandHandler.getMetrics()::render);
+		}
+		catch(IOException | NumberFormatException e){
+			logger.log("Couldn't start the stats endpoint on port: " + port);
+		}
+	}
+
 	/**
 	 * it sets up all events, for event-handling
 	 */
@@ -82,18 +114,17 @@ public class SorakaBot {
 	 * when a message gets sent
 	 */
 	private static void onMessageCreate(){
+		MessagePrefilter prefilter = new MessagePrefilter(commandHandler);
 		client.getEventDispatcher().on(MessageCreateEvent.class)
+				//first drop every message which can't be a command (e.g.: messages by this bot)
+				//this only uses the event itself, so nothing gets fetched for these messages
+				.filter(prefilter::mightBeCommand)
 				.subscribe(event -> {
 					Message message = event.getMessage();
-					MessageChannel channel = message.getChannel().block();
-					//if the message was sent by this bot ignore it
-					if(BotUtility.sameUser(self, message.getAuthor().get())){
-						return;
-					}
 					//execute the command of the message if it is one
 					//if not tell the user its an unknown command
 					if(!commandHandler.execute(message)){
-						channel.createMessage("Unknown Command! use the \"help\" command for all the commands").block();
+						messageService.send(message.getChannelId(), "Unknown Command! use the \"help\" command for all the commands");
 					}
 				});
 	}
@@ -103,15 +134,17 @@ public class SorakaBot {
 	 */
 	private static void onReactionAdd() {
 		client.getEventDispatcher().on(ReactionAddEvent.class)
+				//only reactions on a joinMessage are important, and the reactions of the bot itself are not
+				//both is checked with the ids of the event, so nothing gets fetched for other reactions
+				.filter(event -> roleAssignHandler.isJoinMessage(event.getMessageId()))
+				.filter(event -> !isSelf(event.getUserId()))
 				.subscribe(event -> {
-					logger.log("ReactionAddEvent triggered", event.getMessage().block());
-					Optional<Guild> optGuild = event.getGuild().blockOptional();
-					if(optGuild.isPresent()) {
-						//get the emoji as a string
-						ReactionEmoji emoji = event.getEmoji();
-						Member member = event.getMember().get();
+					//a joinMessage is always in a guild, so the member is there
+					Optional<Member> optMember = event.getMember();
+					if(optMember.isPresent()) {
 						Message message = event.getMessage().block();
-						roleAssignHandler.reactionAdded(emoji, member, message);
+						logger.log("ReactionAddEvent triggered", message);
+						roleAssignHandler.reactionAdded(event.getEmoji(), optMember.get(), message);
 					}
 				});
 	}
@@ -121,16 +154,17 @@ public class SorakaBot {
 	 */
 	private static void onReactionRemove(){
 		client.getEventDispatcher().on(ReactionRemoveEvent.class)
+				//only reactions on a joinMessage are important, and the reactions of the bot itself are not
+				.filter(event -> roleAssignHandler.isJoinMessage(event.getMessageId()))
+				.filter(event -> !isSelf(event.getUserId()))
 				.subscribe(event -> {
-					logger.log("ReactionRemoveEvent triggered", event.getMessage().block());
-					Optional<Guild> optGuild = event.getGuild().blockOptional();
-					if(optGuild.isPresent()) {
+					Optional<Snowflake> optGuildId = event.getGuildId();
+					if(optGuildId.isPresent()) {
 						Message message = event.getMessage().block();
-						ReactionEmoji emoji = event.getEmoji();
-						Guild guild = optGuild.get();
-						Member member = guild.getMemberById(event.getUserId()).block();
+						logger.log("ReactionRemoveEvent triggered", message);
+						Member member = client.getMemberById(optGuildId.get(), event.getUserId()).block();
 
-						roleAssignHandler.reactionRemoved(emoji, member, message);
+						roleAssignHandler.reactionRemoved(event.getEmoji(), member, message);
 					}
 				});
 	}
@@ -141,10 +175,12 @@ public class SorakaBot {
 	private static void onReactionRemoveAll(){
 		client.getEventDispatcher().on(ReactionRemoveAllEvent.class)
 				.subscribe(event -> {
-					MessageChannel channel = event.getChannel().block();
+					//if it was the joinMessage, then nobody has reacted anymore
+					event.getGuildId().ifPresent(guildId -> roleAssignHandler.allReactionsRemoved(guildId, event.getMessageId()));
 					//this is to check if a person (not the bot) removed the reactions from the joinMessage
-					//if so then the joinMessage can't be found anymore (no reactions) so create a new one
-					roleAssignHandler.ifAbsentCreateJoinMessage(channel);
+					//if so then the reactions of the joinMessage get added again (or a new one gets created if its gone)
+					//this only happens in joinChannels, and only once if a lot of reactions are removed at once
+					roleAssignHandler.reconcileJoinMessage(event.getChannelId());
 				});
 	}
 
@@ -194,10 +230,10 @@ public class SorakaBot {
 	private static void onMessageDelete(){
 		client.getEventDispatcher().on(MessageDeleteEvent.class)
 				.subscribe(event -> {
-					MessageChannel channel = event.getChannel().block();
 					//check if the message deleted was the joinMessage of the joinChannel
 					//if so then just create it again
-					roleAssignHandler.ifAbsentCreateJoinMessage(channel);
+					//this only happens in joinChannels, and only once if a lot of messages are deleted at once
+					roleAssignHandler.reconcileJoinMessage(event.getChannelId());
 				});
 	}
 
@@ -209,7 +245,7 @@ public class SorakaBot {
 				.subscribe(event ->{
 					//check if the channel deleted was a joinChannel, if so then create a new joinChannel
 					GuildMessageChannel joinChannel = event.getChannel();
-					if(roleAssignHandler.getJoinChannels().remove(joinChannel)){
+					if(roleAssignHandler.removeJoinChannel(joinChannel)){
 						Guild guild = joinChannel.getGuild().block();
 						roleAssignHandler.createJoinChannel(guild);
 						logger.log("joinChannel created", guild);
@@ -242,7 +278,21 @@ public class SorakaBot {
 		return self;
 	}
 
+	/**
+	 * compares an id with the id of the bot
+	 * if the bot isn't ready yet, then every id is treated like the one of the bot
+	 * @param userId the id of the user
+	 * @return if it is the bot
+	 */
+	public static boolean isSelf(Snowflake userId){
+		return self == null || self.getId().equals(userId);
+	}
+
 	public static DiscordLogger getLogger(){
 		return logger;
 	}
+
+	public static OutboundMessageService getMessageService(){
+		return messageService;
+	}
 }
\ No newline at end of file
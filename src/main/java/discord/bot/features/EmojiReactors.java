@@ -0,0 +1,130 @@
+package discord.bot.features;
+
+import discord.utility.ReactorSet;
+import discord4j.common.util.Snowflake;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * this class stores who reacted with which emoji on the joinMessage of every guild
+ * only the ids of the members are stored (as a ReactorSet), so nothing has to be fetched from discord
+ * it gets updated with every reaction event, so the reactors never have to be fetched all again
+ * (only at the start, to find the reactions which happened while the bot was offline)
+ */
+public class EmojiReactors {
+
+	//the ids of the reactors, by the raw emoji, by the id of the guild
+	private final Map<Long, Map<String, ReactorSet>> reactors = new ConcurrentHashMap<>();
+
+	public EmojiReactors(){
+	}
+
+	/**
+	 * @param reactors the ids of the reactors, by the raw emoji, by the id of the guild (e.g.: the loaded ones)
+	 */
+	public EmojiReactors(Map<Long, Map<String, ReactorSet>> reactors){
+		reactors.forEach((guildId, guildReactors) -> {
+			Map<String, ReactorSet> guildCopy = new ConcurrentHashMap<>();
+			guildReactors.forEach((rawEmoji, memberIds) -> guildCopy.put(rawEmoji, memberIds.copy()));
+			this.reactors.put(guildId, guildCopy);
+		});
+	}
+
+	/**
+	 * stores that a member reacted with an emoji
+	 * @param guildId the id of the guild
+	 * @param rawEmoji the raw emoji
+	 * @param memberId the id of the member
+	 * @return if the member wasn't stored as a reactor already
+	 */
+	public boolean add(Snowflake guildId, String rawEmoji, Snowflake memberId){
+		return reactorsOf(guildId.asLong(), rawEmoji).add(memberId.asLong());
+	}
+
+	/**
+	 * stores that a member removed its reaction
+	 * @param guildId the id of the guild
+	 * @param rawEmoji the raw emoji
+	 * @param memberId the id of the member
+	 * @return if the member was stored as a reactor
+	 */
+	public boolean remove(Snowflake guildId, String rawEmoji, Snowflake memberId){
+		Map<String, ReactorSet> guildReactors = reactors.get(guildId.asLong());
+		if(guildReactors == null)
+			return false;
+		ReactorSet memberIds = guildReactors.get(rawEmoji);
+		return memberIds != null && memberIds.remove(memberId.asLong());
+	}
+
+	/**
+	 * applies the changes of the reactors of an emoji (e.g.: the ones which happened while the bot was offline)
+	 * only the changes are applied, so reactions which were stored in the meantime stay
+	 * @param guildId the id of the guild
+	 * @param rawEmoji the raw emoji
+	 * @param added the ids of the members who reacted
+	 * @param removed the ids of the members who removed their reaction
+	 */
+	public void apply(Snowflake guildId, String rawEmoji, ReactorSet added, ReactorSet removed){
+		ReactorSet memberIds = reactorsOf(guildId.asLong(), rawEmoji);
+		added.forEach(memberIds::add);
+		removed.forEach(memberIds::remove);
+	}
+
+	/**
+	 * forgets all the reactors of a guild (e.g.: when all the reactions were removed from the joinMessage)
+	 * @param guildId the id of the guild
+	 * @return if there were reactors stored
+	 */
+	public boolean clear(Snowflake guildId){
+		Map<String, ReactorSet> guildReactors = reactors.remove(guildId.asLong());
+		return guildReactors != null && guildReactors.values().stream().anyMatch(memberIds -> !memberIds.isEmpty());
+	}
+
+	/**
+	 * the reactors of an emoji
+	 * @param guildId the id of the guild
+	 * @param rawEmoji the raw emoji
+	 * @return a copy of the ids of the reactors, empty if there are none
+	 */
+	public ReactorSet get(Snowflake guildId, String rawEmoji){
+		Map<String, ReactorSet> guildReactors = reactors.get(guildId.asLong());
+		if(guildReactors == null)
+			return new ReactorSet();
+		ReactorSet memberIds = guildReactors.get(rawEmoji);
+		return memberIds == null ? new ReactorSet() : memberIds.copy();
+	}
+
+	/**
+	 * the reactors of every emoji of a guild
+	 * @param guildId the id of the guild
+	 * @return a copy of the ids of the reactors by the raw emoji, empty if there are none
+	 */
+	public Map<String, ReactorSet> get(Snowflake guildId){
+		Map<String, ReactorSet> copy = new HashMap<>();
+		Map<String, ReactorSet> guildReactors = reactors.get(guildId.asLong());
+		if(guildReactors != null)
+			guildReactors.forEach((rawEmoji, memberIds) -> copy.put(rawEmoji, memberIds.copy()));
+		return copy;
+	}
+
+	/**
+	 * a copy of all the reactors, e.g.: to save them
+	 * @return the ids of the reactors, by the raw emoji, by the id of the guild
+	 */
+	public Map<Long, Map<String, ReactorSet>> asMap(){
+		Map<Long, Map<String, ReactorSet>> copy = new HashMap<>();
+		reactors.forEach((guildId, guildReactors) -> {
+			Map<String, ReactorSet> guildCopy = new HashMap<>();
+			guildReactors.forEach((rawEmoji, memberIds) -> guildCopy.put(rawEmoji, memberIds.copy()));
+			copy.put(guildId, guildCopy);
+		});
+		return copy;
+	}
+
+	private ReactorSet reactorsOf(long guildId, String rawEmoji){
+		return reactors.computeIfAbsent(guildId, id -> new ConcurrentHashMap<>())
+				.computeIfAbsent(rawEmoji, emoji -> new ReactorSet());
+	}
+}
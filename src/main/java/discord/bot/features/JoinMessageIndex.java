@@ -0,0 +1,87 @@
+package discord.bot.features;
+
+import discord4j.common.util.Snowflake;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * this class stores the ids of the joinMessages of every guild
+ * with it a reaction event can be checked by the id of its message alone
+ * so reactions on any other message don't have to fetch anything from discord
+ */
+public class JoinMessageIndex {
+
+	//the id of the joinMessage by the id of its guild
+	private final Map<Long, Long> byGuild = new ConcurrentHashMap<>();
+	//the ids of all joinMessages, to check a message id without knowing the guild
+	private final Set<Long> messageIds = ConcurrentHashMap.newKeySet();
+
+	public JoinMessageIndex(){
+	}
+
+	/**
+	 * @param joinMessages the ids of the joinMessages by the ids of their guilds
+	 */
+	public JoinMessageIndex(Map<Snowflake, Snowflake> joinMessages){
+		joinMessages.forEach(this::put);
+	}
+
+	/**
+	 * stores the joinMessage of a guild, the old joinMessage of the guild isn't a joinMessage anymore
+	 * @param guildId the id of the guild
+	 * @param messageId the id of the joinMessage
+	 * @return if this changed the joinMessage of the guild
+	 */
+	public boolean put(Snowflake guildId, Snowflake messageId){
+		long id = messageId.asLong();
+		//first add the new one, so there is no moment without a joinMessage
+		messageIds.add(id);
+		Long old = byGuild.put(guildId.asLong(), id);
+		if(old != null && old != id)
+			messageIds.remove(old);
+		return old == null || old != id;
+	}
+
+	/**
+	 * removes the joinMessage of a guild
+	 * @param guildId the id of the guild
+	 */
+	public void remove(Snowflake guildId){
+		Long old = byGuild.remove(guildId.asLong());
+		if(old != null)
+			messageIds.remove(old);
+	}
+
+	/**
+	 * checks if a message is a joinMessage
+	 * @param messageId the id of the message
+	 * @return if it is the joinMessage of a guild
+	 */
+	public boolean isJoinMessage(Snowflake messageId){
+		return messageIds.contains(messageId.asLong());
+	}
+
+	/**
+	 * gets the id of the joinMessage of a guild
+	 * @param guildId the id of the guild
+	 * @return the id, or empty if the joinMessage of the guild isn't known
+	 */
+	public Optional<Snowflake> get(Snowflake guildId){
+		Long id = byGuild.get(guildId.asLong());
+		return id == null ? Optional.empty() : Optional.of(Snowflake.of(id));
+	}
+
+	/**
+	 * a copy of the index, e.g.: to save it
+	 * @return the ids of the joinMessages by the ids of their guilds
+	 */
+	public Map<Snowflake, Snowflake> asMap(){
+		Map<Snowflake, Snowflake> joinMessages = new HashMap<>();
+		byGuild.forEach((guildId, messageId) -> joinMessages.put(Snowflake.of(guildId), Snowflake.of(messageId)));
+		return joinMessages;
+	}
+}
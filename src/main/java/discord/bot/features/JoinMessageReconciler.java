@@ -0,0 +1,104 @@
+package discord.bot.features;
+
+import discord.logger.DiscordLogger;
+import discord4j.common.util.Snowflake;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * this class checks if the joinMessage of a joinChannel still exists (and creates it again if not)
+ * after messages were deleted or reactions were removed in the joinChannel
+ * all events of a channel within a short time get collected, so the check runs only once for all of them
+ * (e.g.: when 100 messages get deleted at once)
+ * and there is at most one check per channel at the same time
+ */
+public class JoinMessageReconciler {
+
+	//how long the events of a channel get collected before the joinMessage gets checked
+	public static final Duration DEFAULT_DEBOUNCE = Duration.ofSeconds(2);
+
+	//the state of a channel, if a channel has no state then nothing is going on
+	private enum State {
+		//the check will run after the debounce
+		SCHEDULED,
+		//the check is running right now
+		RUNNING,
+		//the check is running, but there were new events, so it has to run again afterwards
+		RUNNING_AGAIN
+	}
+
+	private final DiscordLogger logger;
+	private final Duration debounce;
+	//checks if a channel is a joinChannel, the events of other channels are ignored
+	private final Predicate<Snowflake> isJoinChannel;
+	//checks the joinMessage of a joinChannel, this may block
+	private final Consumer<Snowflake> verify;
+
+	//the state of the channels by the channel id
+	private final Map<Snowflake, State> states = new ConcurrentHashMap<>();
+
+	public JoinMessageReconciler(DiscordLogger logger, Duration debounce, Predicate<Snowflake> isJoinChannel, Consumer<Snowflake> verify){
+		this.logger = logger;
+		this.debounce = debounce;
+		this.isJoinChannel = isJoinChannel;
+		this.verify = verify;
+	}
+
+	/**
+	 * tells the reconciler that the joinMessage of a channel might be gone
+	 * @param channelId the id of the channel where something happened
+	 */
+	public void request(Snowflake channelId){
+		//most events are not in a joinChannel, these are dropped right away
+		if(!isJoinChannel.test(channelId))
+			return;
+		boolean[] schedule = {false};
+		states.compute(channelId, (id, state) -> {
+			if(state == null){
+				schedule[0] = true;
+				return State.SCHEDULED;
+			}
+			//if its already scheduled, this event is just part of it
+			//if its running, then it has to run again, because the event could've happened after the check
+			return state == State.SCHEDULED ? State.SCHEDULED : State.RUNNING_AGAIN;
+		});
+		if(schedule[0])
+			schedule(channelId);
+	}
+
+	private void schedule(Snowflake channelId){
+		Mono.delay(debounce)
+				//the check blocks, so it runs where blocking is allowed
+				.publishOn(Schedulers.boundedElastic())
+				.subscribe(ignored -> run(channelId));
+	}
+
+	private void run(Snowflake channelId){
+		states.put(channelId, State.RUNNING);
+		try {
+			verify.accept(channelId);
+		}
+		catch(RuntimeException e){
+			logger.log("Couldn't check the joinMessage of channel " + channelId.asString() + ": " + e.getMessage());
+		}
+		finally {
+			//if there were events during the check, then check again, otherwise the channel is done
+			boolean[] again = {false};
+			states.compute(channelId, (id, state) -> {
+				if(state == State.RUNNING_AGAIN){
+					again[0] = true;
+					return State.SCHEDULED;
+				}
+				return null;
+			});
+			if(again[0])
+				schedule(channelId);
+		}
+	}
+}
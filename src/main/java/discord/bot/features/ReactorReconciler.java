@@ -0,0 +1,78 @@
+package discord.bot.features;
+
+import discord.utility.ReactorSet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * this class compares the stored reactors of a joinMessage with the current ones (e.g.: after the bot was offline)
+ * the reactors of every emoji are sorted id sets, so the difference is just one merge of both sets (O(n+m))
+ * the result are batches, one for every emoji, with all the members who reacted and who removed their reaction
+ * so they can be handled at once, instead of one member after another
+ */
+public class ReactorReconciler {
+
+	/**
+	 * the changes of the reactors of one emoji
+	 */
+	public static class Batch {
+		private final String rawEmoji;
+		//the ids of the members who reacted
+		private final ReactorSet added;
+		//the ids of the members who removed their reaction
+		private final ReactorSet removed;
+
+		private Batch(String rawEmoji, ReactorSet added, ReactorSet removed){
+			this.rawEmoji = rawEmoji;
+			this.added = added;
+			this.removed = removed;
+		}
+
+		public String getRawEmoji(){
+			return rawEmoji;
+		}
+
+		public ReactorSet getAdded(){
+			return added;
+		}
+
+		public ReactorSet getRemoved(){
+			return removed;
+		}
+
+		public boolean isEmpty(){
+			return added.isEmpty() && removed.isEmpty();
+		}
+	}
+
+	private ReactorReconciler(){
+	}
+
+	/**
+	 * compares the stored reactors with the current reactors of a joinMessage
+	 * an emoji which is only stored, lost all of its reactors, an emoji which is only current, has only new ones
+	 * @param stored the stored reactors by the raw emoji
+	 * @param current the current reactors by the raw emoji
+	 * @return a batch for every emoji, where something changed
+	 */
+	public static List<Batch> diff(Map<String, ReactorSet> stored, Map<String, ReactorSet> current){
+		Set<String> rawEmojis = new HashSet<>(stored.keySet());
+		rawEmojis.addAll(current.keySet());
+
+		List<Batch> batches = new ArrayList<>();
+		ReactorSet none = new ReactorSet();
+		for(String rawEmoji : rawEmojis){
+			ReactorSet storedReactors = stored.getOrDefault(rawEmoji, none);
+			ReactorSet currentReactors = current.getOrDefault(rawEmoji, none);
+			//current / stored are the new reactors, stored / current are the removed ones
+			Batch batch = new Batch(rawEmoji, currentReactors.difference(storedReactors), storedReactors.difference(currentReactors));
+			if(!batch.isEmpty())
+				batches.add(batch);
+		}
+		return batches;
+	}
+}
@@ -8,30 +8,40 @@ import discord.bot.SorakaBot;
 import discord.utility.BotUtility;
 import discord.utility.Description;
 import discord.utility.MemManager;
+import discord.utility.ReactorSet;
 import discord.utility.Utility;
 
+import discord4j.common.util.Snowflake;
 import discord4j.core.GatewayDiscordClient;
 import discord4j.core.object.PermissionOverwrite;
 import discord4j.core.object.entity.Guild;
 import discord4j.core.object.entity.Member;
 import discord4j.core.object.entity.Message;
 import discord4j.core.object.entity.Role;
-import discord4j.core.object.entity.channel.Channel;
 import discord4j.core.object.entity.channel.GuildMessageChannel;
 import discord4j.core.object.entity.channel.MessageChannel;
-import discord4j.core.object.reaction.Reaction;
 import discord4j.core.object.reaction.ReactionEmoji;
 import discord4j.rest.http.client.ClientException;
 import discord4j.rest.json.response.ErrorResponse;
 import discord4j.rest.util.Permission;
 import discord4j.rest.util.PermissionSet;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static java.util.stream.Collectors.toList;
 
 public class RoleAssignHandler {
 
+	//discord only allows about one reaction change per message every 250ms, so the changes are sent with this pace
+	private static final Duration REACTION_PACE = Duration.ofMillis(250);
+	//the error code of discord, if a message doesn't exist
+	private static final int UNKNOWN_MESSAGE = 10008;
+
 	private DiscordLogger logger;
 	private GatewayDiscordClient client;
 
@@ -39,6 +49,8 @@ public class RoleAssignHandler {
 	//these channels are unique to a server, and there the bot writes a message
 	//used to self assign roles via reactions
 	private List<GuildMessageChannel> joinChannels;
+	//the ids of the joinChannels, so the events of every other channel are dropped with a single lookup
+	private final Set<Snowflake> joinChannelIds = ConcurrentHashMap.newKeySet();
 
 	//the map names and their commands for role assigning
 	private Map<String, Command> commands;
@@ -46,11 +58,33 @@ public class RoleAssignHandler {
 	//this map stores links between emojis and the associated roles, by Guild
 	private final Map<Guild, Map<String, Role>> emojiRoles;
 
+	//the ids of the joinMessages, so reactions on other messages can be ignored right away
+	//and the joinMessage can be fetched directly instead of searching the joinChannel for it
+	private final JoinMessageIndex joinMessageIndex;
+
+	//who reacted with which emoji on the joinMessages, this is kept up to date by the reaction events
+	private final EmojiReactors emojiReactors;
+
+	//adds and removes the roles in the background, so the events don't wait for discord
+	private final RoleMutationQueue roleMutationQueue;
+
+	//checks the joinMessages after messages or reactions got deleted, but only once for a lot of events at once
+	private final JoinMessageReconciler joinMessageReconciler;
+
 	public RoleAssignHandler(DiscordLogger logger, GatewayDiscordClient client){
 		this.logger = logger;
 		this.client = client;
-		joinChannels = MemManager.loadJoinChannels(client);
-		emojiRoles = MemManager.loadEmojiRoles(client);
+		//the commands run in parallel (also in the same guild) and the events read the same state
+		//so the joinChannels and emojiRoles are safe to read while they change
+		joinChannels = new CopyOnWriteArrayList<>(MemManager.loadJoinChannels(client));
+		joinChannels.forEach(channel -> joinChannelIds.add(channel.getId()));
+		emojiRoles = new ConcurrentHashMap<>();
+		putEmojiRoles(MemManager.loadEmojiRoles(client));
+		joinMessageIndex = new JoinMessageIndex(MemManager.loadJoinMessages());
+		emojiReactors = new EmojiReactors(MemManager.loadEmojiReactors());
+		roleMutationQueue = new RoleMutationQueue(client, logger);
+		joinMessageReconciler = new JoinMessageReconciler(logger, JoinMessageReconciler.DEFAULT_DEBOUNCE,
+				this::isJoinChannel, this::verifyJoinMessage);
 		initCommands();
 	}
 
@@ -69,8 +103,13 @@ public class RoleAssignHandler {
 		if(existingChannel != null){
 			//if there is a joinChannel also check if there is a joinMessage
 			//if not create one
-			if(findJoinMessage(existingChannel) == null){
-				createJoinMessage(existingChannel);
+			try {
+				if(findJoinMessage(existingChannel) == null){
+					createJoinMessage(existingChannel);
+				}
+			}
+			catch(ClientException e){
+				logger.log("Couldn't check the joinMessage: " + e.getMessage(), guild);
 			}
 			return;
 		}
@@ -117,8 +156,43 @@ public class RoleAssignHandler {
 		createJoinMessage(joinChannel);
 		//finally adding it to the joinChannel list
 		joinChannels.add(joinChannel);
-		//and saving the joinChannels afterwards
-		MemManager.saveJoinChannels(joinChannels, client);
+		joinChannelIds.add(joinChannel.getId());
+		//and saving the joinChannel of the guild afterwards
+		MemManager.saveJoinChannel(guild.getId(), joinChannel.getId());
+	}
+
+	/**
+	 * checks if a channel is a joinChannel, only by its id
+	 * @param channelId the id of the channel
+	 * @return if it is a joinChannel
+	 */
+	public boolean isJoinChannel(Snowflake channelId){
+		return joinChannelIds.contains(channelId);
+	}
+
+	/**
+	 * removes a channel from the joinChannels (e.g.: when it was deleted)
+	 * @param channel the channel
+	 * @return if it was a joinChannel
+	 */
+	public boolean removeJoinChannel(GuildMessageChannel channel){
+		joinChannelIds.remove(channel.getId());
+		return joinChannels.remove(channel);
+	}
+
+	/**
+	 * finds the joinChannel by its id
+	 * @param channelId the id of the channel
+	 * @return the joinChannel or null if its not a joinChannel
+	 */
+	private GuildMessageChannel findJoinChannel(Snowflake channelId){
+		if(!isJoinChannel(channelId))
+			return null;
+		for(GuildMessageChannel channel : joinChannels){
+			if(channel.getId().equals(channelId))
+				return channel;
+		}
+		return null;
 	}
 
 	/**
@@ -150,14 +224,54 @@ public class RoleAssignHandler {
 	}
 
 	/**
-	 * this method finds the method out of a (assumed) joinChannel
+	 * this method finds the joinMessage of a (assumed) joinChannel
+	 * first by the stored id of the joinMessage, this is just one call to discord
+	 * only if there is no stored id, or the message is gone, the channel gets searched for the joinMessage
+	 * @param channel the channel where the joinMessage should be
+	 * @return the message or null if not found
+	 * @throws ClientException if the stored joinMessage couldn't be fetched, but it wasn't because it was deleted
+	 */
+	private Message findJoinMessage(GuildMessageChannel channel){
+		Optional<Snowflake> storedId = joinMessageIndex.get(channel.getGuildId());
+		if(storedId.isPresent()){
+			//only if discord says the message doesn't exist it was deleted
+			//any other error (e.g.: discord is down) is thrown, so the stored id isn't forgotten and no second joinMessage is created
+			Message joinMessage = channel.getMessageById(storedId.get())
+					.onErrorResume(RoleAssignHandler::isUnknownMessage, e -> Mono.empty())
+					.block();
+			if(joinMessage != null)
+				return joinMessage;
+			//the stored joinMessage was deleted
+			joinMessageIndex.remove(channel.getGuildId());
+			MemManager.removeJoinMessage(channel.getGuildId());
+		}
+		return searchJoinMessage(channel);
+	}
+
+	/**
+	 * checks if an error of discord means that the message doesn't exist
+	 * @param error the error
+	 * @return if the status is 404 (Not Found) or the error code is 10008 (Unknown Message)
+	 */
+	private static boolean isUnknownMessage(Throwable error){
+		if(!(error instanceof ClientException))
+			return false;
+		ClientException e = (ClientException) error;
+		if(e.getStatus().code() == 404)
+			return true;
+		Object code = e.getErrorResponse().map(ErrorResponse::getFields).map(fields -> fields.get("code")).orElse(null);
+		return code instanceof Number && ((Number) code).intValue() == UNKNOWN_MESSAGE;
+	}
+
+	/**
+	 * this method searches the joinMessage in the history of a (assumed) joinChannel
 	 * the criteria of a joinMessage are:
 	 * the message was sent from this bot
 	 * the message has all needed emojis as reactions on it
 	 * @param channel the channel where the joinMessage should be
 	 * @return the message or null if not found
 	 */
-	private Message findJoinMessage(GuildMessageChannel channel){
+	private Message searchJoinMessage(GuildMessageChannel channel){
 		//basically find the first message sent by the bot
 		//with all the right emojis
 		Guild guild = channel.getGuild().block();
@@ -192,20 +306,73 @@ public class RoleAssignHandler {
 					return messageEmojis.containsAll(guildEmojis);									//now if this list contains all the needed emojis its a joinMsg
 				})
 				.findFirst().orElse(null);
+		//remember the joinMessage, so the reactions on it are recognized
+		//and it doesn't have to be searched again
+		if(joinMessage != null)
+			rememberJoinMessage(channel.getGuildId(), joinMessage.getId());
 		return joinMessage;
 	}
 
+	/**
+	 * stores the id of the joinMessage of a guild, and saves it if it changed
+	 * @param guildId the id of the guild
+	 * @param messageId the id of the joinMessage
+	 */
+	private void rememberJoinMessage(Snowflake guildId, Snowflake messageId){
+		if(joinMessageIndex.put(guildId, messageId))
+			MemManager.saveJoinMessage(guildId, messageId);
+	}
+
+	/**
+	 * this method checks if the joinMessage of a channel still exists, after something was deleted in it
+	 * the check doesn't run right away, all the events of a channel in a short time only lead to one check
+	 * @param channelId the id of the channel, if its not a joinChannel nothing happens
+	 */
+	public void reconcileJoinMessage(Snowflake channelId){
+		joinMessageReconciler.request(channelId);
+	}
+
+	/**
+	 * the check of the joinMessageReconciler
+	 * @param channelId the id of the joinChannel
+	 */
+	private void verifyJoinMessage(Snowflake channelId){
+		GuildMessageChannel joinChannel = findJoinChannel(channelId);
+		if(joinChannel != null)
+			ifAbsentCreateJoinMessage(joinChannel);
+	}
+
 	/**
 	 * this method adds a joinMessage to a channel If the channel is a joinChannel, and there is no joinMessage already
+	 * if there is one, its reactions are set to the emojis of the roles again
 	 * @param channel the channel where to create a joinMessage
 	 */
 	public void ifAbsentCreateJoinMessage(MessageChannel channel){
 		if(joinChannels.contains(channel)){
 			GuildMessageChannel joinChannel = (GuildMessageChannel) channel;
-			if(findJoinMessage(joinChannel) == null){
+			Message joinMessage = findJoinMessage(joinChannel);
+			if(joinMessage == null){
 				createJoinMessage(joinChannel);
 				logger.log("New joinMessage created", joinChannel.getGuild().block());
 			}
+			//the joinMessage is still there, but its reactions could've been removed, so they are added again
+			else
+				setToRoleEmojis(joinMessage);
+		}
+	}
+
+	/**
+	 * this method forgets the reactors of a joinMessage when all of its reactions were removed
+	 * so the stored reactors are the current ones again (nobody has reacted)
+	 * @param guildId the id of the guild
+	 * @param messageId the id of the message where all reactions were removed
+	 */
+	public void allReactionsRemoved(Snowflake guildId, Snowflake messageId){
+		if(!joinMessageIndex.isJoinMessage(messageId))
+			return;
+		synchronized(emojiReactors){
+			if(emojiReactors.clear(guildId) && MemManager.journalEmojiReactorsCleared(guildId))
+				MemManager.saveEmojiReactors(guildId, emojiReactors.get(guildId));
 		}
 	}
 
@@ -216,7 +383,9 @@ public class RoleAssignHandler {
 	private void createJoinMessage(GuildMessageChannel joinChannel){
 		Guild guild = joinChannel.getGuild().block();
 		final String content = makeJoinMessageContent(guild);
-		setToRoleEmojis(joinChannel.createMessage(content).block());
+		Message joinMessage = joinChannel.createMessage(content).block();
+		rememberJoinMessage(guild.getId(), joinMessage.getId());
+		setToRoleEmojis(joinMessage);
 	}
 
 	/**
@@ -231,8 +400,9 @@ public class RoleAssignHandler {
 		//well if it was found edit the content of the message to an updated version of itself
 		if(joinMessage != null) {
 			//updating the message to the correct one
-			joinMessage.edit(message -> message.setContent(makeJoinMessageContent(guild))).block();
-			setToRoleEmojis(joinMessage);
+			//the edited message has the current reactions, so setToRoleEmojis knows which are already there
+			Message editedMessage = joinMessage.edit(message -> message.setContent(makeJoinMessageContent(guild))).block();
+			setToRoleEmojis(editedMessage == null ? joinMessage : editedMessage);
 		}
 	}
 
@@ -264,6 +434,7 @@ public class RoleAssignHandler {
 
 	/**
 	 * it adds the emojis used to assign roles to a message
+	 * only the missing ones get added and only the wrong ones removed, if everything is right nothing is sent
 	 * @param msg this is the message
 	 */
 	private void setToRoleEmojis(Message msg){
@@ -280,24 +451,39 @@ public class RoleAssignHandler {
 					return;
 
 			}
-			//now adding the reactions to the message
-			//and i will also removing anything else after that
-			//so during this foreach i will fill a list only the keys
-			final List<String> roleEmojis = new LinkedList<>();
-			guildEmojiRoles.forEach((emoji, role) -> {
-				roleEmojis.add(emoji);
-				msg.addReaction(ReactionEmoji.unicode(emoji)).block();
-			});
-
-			//also removing every emoji which is not a roleEmoji
-			//so first get all unicode reactions
-			//and then get all reactions which are not in the list
-			//and for all of them remove the reaction
-			msg.getReactions().stream()
-					.map(reaction -> reaction.getEmoji())
-					.filter(reaction -> reaction.asUnicodeEmoji().isPresent())
-					.filter(emoji -> !roleEmojis.contains(emoji.asUnicodeEmoji().get().getRaw()))
-					.forEach(emoji -> msg.removeReactions(emoji).block());
+			//first find out what is already on the message
+			//the emojis the bot already reacted with, and every unicode emoji on the message
+			final Set<String> ownEmojis = new HashSet<>();
+			final Set<String> messageEmojis = new HashSet<>();
+			msg.getReactions().forEach(reaction -> reaction.getEmoji().asUnicodeEmoji().ifPresent(emoji -> {
+				messageEmojis.add(emoji.getRaw());
+				if(reaction.selfReacted())
+					ownEmojis.add(emoji.getRaw());
+			}));
+
+			//now only add the roleEmojis which the bot didn't react with yet
+			//and remove every emoji which is not a roleEmoji
+			final List<Mono<Void>> changes = new ArrayList<>();
+			final Map<String, Role> roleEmojis = guildEmojiRoles;
+			roleEmojis.keySet().stream()
+					.filter(emoji -> !ownEmojis.contains(emoji))
+					.forEach(emoji -> changes.add(msg.addReaction(ReactionEmoji.unicode(emoji))));
+			messageEmojis.stream()
+					.filter(emoji -> !roleEmojis.containsKey(emoji))
+					.forEach(emoji -> changes.add(msg.removeReactions(ReactionEmoji.unicode(emoji))));
+			if(changes.isEmpty())
+				return;
+
+			//the changes are sent one after another (so the emojis keep their order), with a pause in between
+			//so they don't run into the rate limit of the reactions
+			Flux.fromIterable(changes)
+					.index()
+					.concatMap(change -> change.getT1() == 0 ? change.getT2() : Mono.delay(REACTION_PACE).then(change.getT2()))
+					.onErrorResume(ClientException.class, e -> {
+						logger.log("Couldn't update the reactions of the joinMessage: " + e.getMessage(), guild);
+						return Mono.empty();
+					})
+					.blockLast();
 		}
 	}
 
@@ -312,81 +498,93 @@ public class RoleAssignHandler {
 		Guild guild = member.getGuild().block();
 		String rawEmoji = emoji.asUnicodeEmoji().orElse(ReactionEmoji.unicode("customEmoji")).getRaw();
 		//and now get the role connected to that emoji, also check if there was an entry
-		Role role = emojiRoles.get(guild).get(rawEmoji);
-
-		Channel joinChannel = message.getChannel().block();
+		Map<String, Role> guildEmojiRoles = emojiRoles.get(guild);
+		Role role = guildEmojiRoles == null ? null : guildEmojiRoles.get(rawEmoji);
 
-		//if the reaction was removed somewhere not in a joinChannel, then its not important
-		if(!joinChannels.contains(joinChannel))
-			return;
-		//if this wasn't the joinMessage
-		if(!message.equals(findJoinMessage((GuildMessageChannel) joinChannel)))
+		//if this wasn't the joinMessage, then its not important
+		if(!joinMessageIndex.isJoinMessage(message.getId()))
 			return;
 
+		//the reaction is gone, no matter if there is a role for it
+		rememberReactor(guild.getId(), rawEmoji, member.getId(), false);
 
-		//check if there is no role assigned to the emoji or the user doesn't have the role
-		if(role == null || member.getRoles().filter(role::equals).blockFirst() == null){
+		//check if there is no role assigned to the emoji
+		//it isn't checked if the member has the role, because the role could still be in the queue to be added
+		if(role == null){
 			logger.log("The emoji: " + rawEmoji + "was removed which has no role assigned to it by: " + BotUtility.getNameInGuild(member)
 					, guild);
 			return;
 		}
 
-		//now assign the role to the user
-		member.removeRole(role.getId()).block();
-
-		MemManager.saveEmojiReactors(getCurrentEmojiReactors());
+		//now remove the role from the user, this happens in the background
+		roleMutationQueue.removeRole(guild.getId(), member.getId(), role.getId());
 		logger.log("Removed role: **" + role.getName() + "** from: **" + BotUtility.getNameInGuild(member) + "**", guild);
 	}
 
 	/**
 	 * this method checks if while the bot was offline, new people reacted to the joinMessages of the guilds
-	 * and if people retracted their reaction, if so then
+	 * and if people retracted their reaction, if so then the roles get added or removed
+	 * the reactors from before are the ones stored from the reaction events, so only the current ones have to be fetched
+	 * the changes of an emoji are handled as a batch, so the reactors get saved once per guild and not once per member
 	 */
 	public void checkJoinReactions(){
-		//get the old and current reactors
-		Map<Guild, Map<String, List<Member>>> oldEmojiReactors = MemManager.loadEmojiReactors(client);
-		//if there was no file containing the emojiReactors then stop this
-		if(oldEmojiReactors == null)
-			return;
-		Map<Guild, Map<String, List<Member>>> currentEmojiReactors = getCurrentEmojiReactors();
-
-		//now go through every guild, emoji and check if there is a difference in Members
-		currentEmojiReactors.forEach((guild, emojiReactorsByGuild) -> {
+		//the saved counts of the reactors, if they are still the same, the reactors don't have to be fetched
+		Map<Long, Map<String, long[]>> savedCounts = MemManager.loadEmojiReactorCounts();
+		//go through every joinChannel, and check if there is a difference in the reactors of every emoji
+		joinChannels.forEach(channel -> {
+			Guild guild = channel.getGuild().block();
 			//get the message which contains the reactions
-			Message joinMessage = findJoinMessage(guild);
-			//if there is none then return (this should never happens because the currentEmojiReactors just have entries if there is a channel
+			Message joinMessage;
+			try {
+				joinMessage = findJoinMessage(channel);
+			}
+			catch(ClientException e){
+				logger.log("Couldn't check the reactions of the joinMessage: " + e.getMessage(), guild);
+				return;
+			}
 			if(joinMessage == null)
 				return;
-
-			emojiReactorsByGuild.forEach((rawEmoji, currentReactors) -> {
-				//get the reactors of the same guild and emoji of the oldReactors
-				Map<String, List<Member>> oldEmojiReactorsByGuild = oldEmojiReactors.get(guild);
-				//if there is no entry simulate an empty entry
-				if(oldEmojiReactorsByGuild == null)
-					oldEmojiReactorsByGuild = new HashMap<>();
-				List<Member> oldReactors = oldEmojiReactorsByGuild.get(rawEmoji);
-				if(oldReactors == null)
-					oldReactors = new LinkedList<>();
-
-				//for every emoji get the differences of the old and current reactors (both ways)
-				//if you take current / old then you get the new added reactors
-				//if you take old / current you get the removed reactors
-				List<Member> newReactors = Utility.listDifference(currentReactors, oldReactors);
-				List<Member> removedReactors = Utility.listDifference(oldReactors, currentReactors);
-				//now simulate the ReactionAdd event for the new Reactors, and same to the removedReactors
-				newReactors.forEach(member -> {
-					//finding the ReactionEmoji
-					reactionAdded(ReactionEmoji.unicode(rawEmoji), member, joinMessage);
-				});
-				removedReactors.forEach(member -> {
-					//finding the ReactionEmoji
-					reactionRemoved(ReactionEmoji.unicode(rawEmoji), member, joinMessage);
-				});
-			});
+			//the stored reactors before the current ones are fetched
+			//reaction events during the fetch change the stored reactors themselves, so they are not part of the diff
+			Map<String, ReactorSet> storedEmojiReactors = emojiReactors.get(guild.getId());
+			Map<String, ReactorSet> currentEmojiReactors = getCurrentEmojiReactors(joinMessage, storedEmojiReactors,
+					savedCounts.getOrDefault(guild.getId().asLong(), new HashMap<>()));
+
+			List<ReactorReconciler.Batch> batches = ReactorReconciler.diff(storedEmojiReactors, currentEmojiReactors);
+			if(batches.isEmpty())
+				return;
+			//only the changes are applied to the stored reactors, so the reaction events during the fetch aren't lost
+			//the snapshot contains those too, so the journal can be emptied
+			synchronized(emojiReactors){
+				batches.forEach(batch -> emojiReactors.apply(guild.getId(), batch.getRawEmoji(), batch.getAdded(), batch.getRemoved()));
+				MemManager.saveEmojiReactors(guild.getId(), emojiReactors.get(guild.getId()));
+			}
+			batches.forEach(batch -> applyBatch(guild, batch));
 		});
 
 	}
 
+	/**
+	 * adds the role of an emoji to all members who reacted while the bot was offline
+	 * and removes it from all who removed their reaction
+	 * @param guild the guild of the joinMessage
+	 * @param batch the changes of the reactors of the emoji
+	 */
+	private void applyBatch(Guild guild, ReactorReconciler.Batch batch){
+		Map<String, Role> guildEmojiRoles = emojiRoles.get(guild);
+		Role role = guildEmojiRoles == null ? null : guildEmojiRoles.get(batch.getRawEmoji());
+		if(role == null){
+			logger.log("The reactions of the emoji: " + batch.getRawEmoji() + " changed, but it has no role assigned to it", guild);
+			return;
+		}
+		//the changes only need the ids, so no member has to be fetched
+		//they are sent in the background, as fast as the rate limit of the guild allows
+		batch.getAdded().forEach(memberId -> roleMutationQueue.addRole(guild.getId(), Snowflake.of(memberId), role.getId()));
+		batch.getRemoved().forEach(memberId -> roleMutationQueue.removeRole(guild.getId(), Snowflake.of(memberId), role.getId()));
+		logger.log("Assigned role: **" + role.getName() + "** to " + batch.getAdded().size() + " and removed it from "
+				+ batch.getRemoved().size() + " members, who changed their reaction while the bot was offline", guild);
+	}
+
 	/**
 	 * this method simulates a that a reaction has been added
 	 * somebody could've really added a reaction at that point, but it doesn't have to be
@@ -395,18 +593,13 @@ public class RoleAssignHandler {
 	 * @param message the message on which was reacted
 	 */
 	public void reactionAdded(ReactionEmoji emoji, Member member, Message message){
-		Channel joinChannel = message.getChannel().block();
-		Guild guild = member.getGuild().block();
-		//if the reaction was added somewhere not in a joinChannel, then its not important
-		if(!joinChannels.contains(joinChannel))
-			return;
-		//if this wasn't the joinMessage
-		if(!message.equals(findJoinMessage((GuildMessageChannel) joinChannel)))
+		//if this wasn't the joinMessage, then its not important
+		if(!joinMessageIndex.isJoinMessage(message.getId()))
 			return;
 		//check if the member is the bot then also cancel this method
-
-		if(BotUtility.sameUser(SorakaBot.getSelf(), member))
+		if(SorakaBot.isSelf(member.getId()))
 			return;
+		Guild guild = member.getGuild().block();
 
 
 		//and now get the role connected to that emoji, also check if there was an entry
@@ -435,82 +628,99 @@ public class RoleAssignHandler {
 			}
 			return;
 		}
-		//now assign the role to the user
-		member.addRole(role.getId()).block();
-		MemManager.saveEmojiReactors(getCurrentEmojiReactors());
+		//remember the reaction, so it is known if it's gone after the bot was offline
+		rememberReactor(guild.getId(), rawEmoji, member.getId(), true);
+		//now assign the role to the user, this happens in the background
+		roleMutationQueue.addRole(guild.getId(), member.getId(), role.getId());
 		logger.log("Assigned role: **" + role.getName() + "** to: **" + BotUtility.getNameInGuild(member) + "**", guild);
 	}
 
 	/**
-	 * this method gets all people which have their reactions on a JoinMessage
-	 * grouped first by guild, and then by emoji
-	 * this is done by a map
-	 * @return returns this map
+	 * this method gets the ids of all people which have their reactions on a joinMessage, by emoji
+	 * only the ids of the users are needed, so no member has to be fetched
+	 * the reactors of an emoji are only fetched if its count changed, the count is already in the message
+	 * if the count is the same as the saved one (and the saved reactors are the ones the count was saved with)
+	 * then the stored reactors are still the current ones
+	 * @param joinMessage the joinMessage
+	 * @param storedEmojiReactors the stored ids of the reactors by the raw emoji
+	 * @param savedCounts the saved {count, fingerprint} of the reactors by the raw emoji
+	 * @return returns the ids of the reactors by the raw emoji
 	 */
-	private Map<Guild, Map<String, List<Member>>> getCurrentEmojiReactors(){
-		if(true)
-		return new HashMap<>();
-		//first get every joinMessage
-		//then add for every message, for every emoji the reactor as an entry of the inner map
-		final Map<Guild, Map<String, List<Member>>> emojiReactors = new HashMap<>();
-		joinChannels.forEach(channel -> {
-			final Guild guild = channel.getGuild().block();
-			//this stores the members which reacted to the emoji, for a certain guild
-			final Map<String, List<Member>> emojiReactorsByGuild = new HashMap<>();
-			final Message joinMessage = findJoinMessage(channel);
-			//check if there even is a joinMessage, if not then there were no new members (technically every role should be removed
-			//but i wont do that
-			if(joinMessage == null)
-				return;
-
-			//now go through every reaction emoji and get the reactors
-			joinMessage.getReactions().stream()
-					.map(Reaction::getEmoji)
-					.forEach(emoji -> {
-						final List<Member> reactorsByEmoji = new LinkedList<>();
-						//getting the reactors of the guild, by first getting all users who reacted
-						//then finding them in the guild
-						//but they don't have to be in there (they could've left and the reaction stays)
-						//so check if they are still in, then get the member
-						//then add every member to the list of members who reacted
-						joinMessage.getReactors(emoji).toStream()
-								.map(user -> guild.getMemberById(user.getId()).blockOptional())
-								.filter(Optional::isPresent)
-								.map(Optional::get)
-								.forEach(reactorsByEmoji::add);
-						//get the raw version of the emoji
-						String rawEmoji = emoji.asUnicodeEmoji().orElse(ReactionEmoji.unicode("customEmoji")).getRaw();
-						//now put this entry into the emojiReactorsByGuild
-						emojiReactorsByGuild.put(rawEmoji, reactorsByEmoji);
-
-					});
-
-			//now putting this map into the map of the emojiReactors
-			emojiReactors.put(guild, emojiReactorsByGuild);
-		});
+	private Map<String, ReactorSet> getCurrentEmojiReactors(Message joinMessage, Map<String, ReactorSet> storedEmojiReactors,
+															Map<String, long[]> savedCounts){
+		final Map<String, ReactorSet> emojiReactorsByGuild = new HashMap<>();
+		//now go through every reaction emoji and get the reactors
+		joinMessage.getReactions()
+				.forEach(reaction -> {
+					ReactionEmoji emoji = reaction.getEmoji();
+					//get the raw version of the emoji
+					String rawEmoji = emoji.asUnicodeEmoji().orElse(ReactionEmoji.unicode("customEmoji")).getRaw();
+					//the reaction of the bot itself isn't a reactor
+					int count = reaction.getCount() - (reaction.selfReacted() ? 1 : 0);
+					ReactorSet storedReactors = storedEmojiReactors.getOrDefault(rawEmoji, new ReactorSet());
+					long[] saved = savedCounts.get(rawEmoji);
+					boolean unchanged = saved != null && saved[0] == storedReactors.size()
+							&& saved[1] == storedReactors.fingerprint() && count == storedReactors.size();
+					if(unchanged){
+						emojiReactorsByGuild.put(rawEmoji, storedReactors);
+						return;
+					}
+					final ReactorSet reactorsByEmoji = ReactorSet.of(joinMessage.getReactors(emoji).toStream()
+							.filter(user -> !SorakaBot.isSelf(user.getId()))
+							.mapToLong(user -> user.getId().asLong())
+							.toArray());
+					emojiReactorsByGuild.put(rawEmoji, reactorsByEmoji);
+				});
+		return emojiReactorsByGuild;
+	}
 
-		//finally return the map
-		return emojiReactors;
+	/**
+	 * stores that a member reacted (or removed the reaction), and appends it to the journal
+	 * the whole reactors are only saved if the journal is too long
+	 * the change and the record happen together, so the journal has the same order as the changes
+	 * @param guildId the id of the guild
+	 * @param rawEmoji the raw emoji
+	 * @param memberId the id of the member
+	 * @param added if the member reacted, or removed the reaction
+	 */
+	private void rememberReactor(Snowflake guildId, String rawEmoji, Snowflake memberId, boolean added){
+		synchronized(emojiReactors){
+			boolean changed = added ? emojiReactors.add(guildId, rawEmoji, memberId) : emojiReactors.remove(guildId, rawEmoji, memberId);
+			if(changed && MemManager.journalEmojiReactor(guildId, rawEmoji, memberId, added))
+				MemManager.saveEmojiReactors(guildId, emojiReactors.get(guildId));
+		}
 	}
 
 	/**
 	 * this method links all the emojis to the right roles
 	 */
 	private void linkEmojisToRoles(){
-		emojiRoles.putAll(MemManager.loadEmojiRoles(client));
+		putEmojiRoles(MemManager.loadEmojiRoles(client));
+	}
+
+	/**
+	 * puts loaded emojiRoles into the emojiRoles, as concurrent maps
+	 * @param loaded the loaded emojiRoles
+	 */
+	private void putEmojiRoles(Map<Guild, Map<String, Role>> loaded){
+		loaded.forEach((guild, guildEmojiRoles) -> emojiRoles.put(guild, new ConcurrentHashMap<>(guildEmojiRoles)));
 	}
 
 	/**
 	 * this method links an Emoji to a certain role of a guild
 	 * @param rawEmoji the raw string of the emoji
 	 * @param role the role in the guild, where the link will be created
+	 * @return false if the emoji is already linked to a role
 	 */
-	 private void linkEmojiToRole(String rawEmoji, Role role){
+	 private boolean linkEmojiToRole(String rawEmoji, Role role){
 		Guild guild = role.getGuild().block();
-		Map<String, Role> guildEmojiRoles = emojiRoles.get(guild);
-		if(guildEmojiRoles == null)
-			guildEmojiRoles = new HashMap<>();
-		guildEmojiRoles.put(rawEmoji, role);
+		//the change and the record happen together, so the journal has the same order as the changes
+		synchronized(emojiRoles){
+			if(emojiRoles.computeIfAbsent(guild, g -> new ConcurrentHashMap<>()).putIfAbsent(rawEmoji, role) != null)
+				return false;
+			journalEmojiRoles(guild, MemManager.journalEmojiRole(guild.getId(), rawEmoji, role.getId()));
+		}
+		return true;
 	}
 
 	/**
@@ -525,10 +735,27 @@ public class RoleAssignHandler {
 
 		//now going through the map, and checking if any entry has the role as its value
 		String linkedEmoji = hasEmojiRoleLink(role);
-		return guildEmojiRoles.remove(linkedEmoji) != null;
+		if(linkedEmoji == null)
+			return false;
+		synchronized(emojiRoles){
+			if(guildEmojiRoles.remove(linkedEmoji) == null)
+				return false;
+			journalEmojiRoles(guild, MemManager.journalEmojiRoleRemoved(guild.getId(), linkedEmoji));
+		}
+		return true;
 
 	}
 
+	/**
+	 * saves the emojiRoles of a guild, if the journal of them is too long
+	 * @param guild the guild
+	 * @param compactionDue what the journal returned
+	 */
+	private void journalEmojiRoles(Guild guild, boolean compactionDue){
+		if(compactionDue)
+			MemManager.saveEmojiRoles(guild.getId(), emojiRoles.getOrDefault(guild, new HashMap<>()));
+	}
+
 	/**
 	 * checks if a role has an entry in the emojiRoles
 	 * @param role the role to check
@@ -583,14 +810,14 @@ public class RoleAssignHandler {
 
 		Description description = new Description("you can add a new role to the self-assignable roles. Syntax: **!addRole [-n] $role $emoji**");
 
-		Executable executable = message -> {
+		Executable executable = command -> {
+			Message message = command.getMessage();
 			//definitely has a guild
 			Guild guild = message.getGuild().block();
 			MessageChannel channel = message.getChannel().block();
-			//splitting the content up into the arguments
+			//the content is already split up into the arguments
 			//it is assumed it has the right arguments, because its a requirement
-			String content = message.getContent();
-			String[] segments = content.split(" ");
+			String[] segments = command.getSegments();
 			//now you have to check which argument is which, and this differs depending if it has 3 or 4 segments
 
 			boolean hasTag = segments.length == 4;
@@ -660,22 +887,17 @@ public class RoleAssignHandler {
 				channel.createMessage("Invalid Emoji! Either it's a custom emoji or an invalid one. Only standard unicode emoji!").block();
 				return;
 			}
-			//now you have to check if there is already a link for the emoji, if so deny the command
-			Map<String, Role> guildEmojiRoles = emojiRoles.get(guild);
-			if(guildEmojiRoles != null && guildEmojiRoles.get(rawEmoji) != null){
+			//now the emoji has been added, so create a link to the role
+			//if there is already a link for the emoji, deny the command
+			if(!linkEmojiToRole(rawEmoji, role)){
 				channel.createMessage("The Emoji has already a role associated with it!").block();
 				return;
 			}
 
-			//now the emoji has been added, so create a link to the role
-			linkEmojiToRole(rawEmoji, role);
-
 			//then update the joinMessage, to include the description of the role
 			updateJoinMessage(guild);
 			channel.createMessage("Successfully added role **" + roleName + "** to the assignable roles with the emoji " + rawEmoji).block();
 			logger.log("Added role **" + roleName + "** to the assignable roles with the emoji " + rawEmoji);
-			//last save the emojiRoles
-			MemManager.saveEmojiRoles(emojiRoles);
 
 		};
 
@@ -701,16 +923,14 @@ public class RoleAssignHandler {
 		Description description = new Description("you can remove a role from the self-assignable roles (doesn't delete the role). " +
 													"Syntax: **!removeRole $role**");
 
-		Executable executable = message -> {
+		Executable executable = command -> {
+			Message message = command.getMessage();
 			//definitely has a guild
 			Guild guild = message.getGuild().block();
 			MessageChannel channel = message.getChannel().block();
-			//splitting the content up into the arguments
+			//the content is already split up into the arguments
 			//it is assumed it has the right arguments, because its a requirement
-			String content = message.getContent();
-			String[] segments = content.split(" ");
-
-			String roleName = segments[1];
+			String roleName = command.getSegment(1);
 
 			Role role = BotUtility.getRoleByName(roleName, guild);
 
@@ -730,8 +950,6 @@ public class RoleAssignHandler {
 
 			//then update the joinMessage, to remove the description of the role
 			updateJoinMessage(guild);
-			//last save the emojiRoles
-			MemManager.saveEmojiRoles(emojiRoles);
 
 		};
 
@@ -756,17 +974,15 @@ public class RoleAssignHandler {
 
 		Description description = new Description("You can change the emoji of a Role. Syntax: **!changeEmoji $role $emoji**");
 
-		Executable executable = message -> {
+		Executable executable = command -> {
+			Message message = command.getMessage();
 			//definitely has a guild
 			Guild guild = message.getGuild().block();
 			MessageChannel channel = message.getChannel().block();
-			//splitting the content up into the arguments
+			//the content is already split up into the arguments
 			//it is assumed it has the right arguments, because its a requirement
-			String content = message.getContent();
-			String[] segments = content.split(" ");
-
-			String roleName = segments[1];
-			String rawNewEmoji = segments[2];
+			String roleName = command.getSegment(1);
+			String rawNewEmoji = command.getSegment(2);
 
 			Role role = BotUtility.getRoleByName(roleName, guild);
 
@@ -801,21 +1017,29 @@ public class RoleAssignHandler {
 			}
 
 			//now you have to check if there is already a link for the emoji, if so deny the command
-			Map<String, Role> guildEmojiRoles = emojiRoles.get(guild);
-			if(guildEmojiRoles.get(rawNewEmoji) != null){
+			//the check and the change happen together, so another command can't link the emoji in between
+			boolean taken;
+			synchronized(emojiRoles){
+				Map<String, Role> guildEmojiRoles = emojiRoles.computeIfAbsent(guild, g -> new ConcurrentHashMap<>());
+				taken = guildEmojiRoles.get(rawNewEmoji) != null;
+				if(!taken){
+					guildEmojiRoles.put(newEmoji.getRaw(), role);
+					guildEmojiRoles.remove(rawOldEmoji);
+					//the changes are only appended to the journal
+					MemManager.journalEmojiRole(guild.getId(), newEmoji.getRaw(), role.getId());
+					journalEmojiRoles(guild, MemManager.journalEmojiRoleRemoved(guild.getId(), rawOldEmoji));
+				}
+			}
+			if(taken){
 				channel.createMessage("The Emoji has already a role associated with it!").block();
 				return;
 			}
 
-			guildEmojiRoles.put(newEmoji.getRaw(), role);
-			guildEmojiRoles.remove(rawOldEmoji);
 			//then update the joinMessage, to remove the description of the role
 			updateJoinMessage(guild);
 			//give feedback to the user
 			channel.createMessage("Changed the emoji for the role **" + roleName + "** from " + rawOldEmoji + " to " + rawNewEmoji).block();
 			logger.log("Changed the emoji for the role **" + roleName + "** from " + rawOldEmoji + " to " + rawNewEmoji, message);
-			//last save the emojiRoles
-			MemManager.saveEmojiRoles(emojiRoles);
 
 		};
 
@@ -826,11 +1050,20 @@ public class RoleAssignHandler {
 
 	//----------------------------------------getter&setter----------------------------------------
 
-	public List<GuildMessageChannel> getJoinChannels(){
-		return joinChannels;
+	/**
+	 * checks if a message is the joinMessage of a guild, without fetching anything
+	 * @param messageId the id of the message
+	 * @return if it is a joinMessage
+	 */
+	public boolean isJoinMessage(Snowflake messageId){
+		return joinMessageIndex.isJoinMessage(messageId);
 	}
 
 	public Map<String, Command> getCommands(){
 		return commands;
 	}
+
+	public RoleMutationQueue getRoleMutationQueue(){
+		return roleMutationQueue;
+	}
 }
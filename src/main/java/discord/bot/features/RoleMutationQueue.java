@@ -0,0 +1,250 @@
+package discord.bot.features;
+
+import discord.logger.DiscordLogger;
+import discord.utility.LatencyHistogram;
+import discord.utility.TokenBucket;
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * this class adds and removes roles of members in the background, instead of waiting for discord on the event thread
+ * if a member toggles a reaction a few times before the role was changed, only the last state gets sent to discord
+ * every guild has its own queue and token bucket, so a guild with a lot of changes (e.g.: a raid of new members)
+ * doesn't use up the rate limit of the others, and the changes of a guild are sent one after another
+ */
+public class RoleMutationQueue {
+
+	//how many role changes can be sent at once for a guild, and how long it takes until one more can be sent
+	public static final int DEFAULT_GUILD_CAPACITY = 5;
+	public static final Duration DEFAULT_GUILD_REFILL = Duration.ofMillis(500);
+
+	/**
+	 * a role of a member, the changes of the same role of the same member get merged
+	 */
+	private static final class Key {
+		private final long guildId;
+		private final long memberId;
+		private final long roleId;
+
+		private Key(long guildId, long memberId, long roleId){
+			this.guildId = guildId;
+			this.memberId = memberId;
+			this.roleId = roleId;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(this == o)
+				return true;
+			if(!(o instanceof Key))
+				return false;
+			Key key = (Key) o;
+			return guildId == key.guildId && memberId == key.memberId && roleId == key.roleId;
+		}
+
+		@Override
+		public int hashCode(){
+			return Objects.hash(guildId, memberId, roleId);
+		}
+	}
+
+	/**
+	 * what should happen to the role, only the last wish counts
+	 */
+	private static final class Mutation {
+		private final boolean add;
+		//when the first change of this role was queued, for the lag
+		private final long queuedAt;
+
+		private Mutation(boolean add, long queuedAt){
+			this.add = add;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	/**
+	 * the queue of a guild
+	 */
+	private static final class GuildQueue {
+		private final Queue<Key> keys = new ConcurrentLinkedQueue<>();
+		private final TokenBucket bucket;
+		//if the queue is being sent right now
+		private final AtomicBoolean draining = new AtomicBoolean();
+
+		private GuildQueue(TokenBucket bucket){
+			this.bucket = bucket;
+		}
+	}
+
+	private final GatewayDiscordClient client;
+	private final DiscordLogger logger;
+	private final int guildCapacity;
+	private final Duration guildRefill;
+
+	//the changes which weren't sent yet
+	private final Map<Key, Mutation> pending = new ConcurrentHashMap<>();
+	//the order of the changes, by the id of the guild
+	private final Map<Long, GuildQueue> queues = new ConcurrentHashMap<>();
+
+	//the metrics
+	private final LongAdder queued = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder applied = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	//the time from queueing a change until it was sent
+	private final LatencyHistogram lag = new LatencyHistogram();
+
+	public RoleMutationQueue(GatewayDiscordClient client, DiscordLogger logger, int guildCapacity, Duration guildRefill){
+		this.client = client;
+		this.logger = logger;
+		this.guildCapacity = guildCapacity;
+		this.guildRefill = guildRefill;
+	}
+
+	public RoleMutationQueue(GatewayDiscordClient client, DiscordLogger logger){
+		this(client, logger, DEFAULT_GUILD_CAPACITY, DEFAULT_GUILD_REFILL);
+	}
+
+	/**
+	 * queues that a member should get a role
+	 * @param guildId the id of the guild
+	 * @param memberId the id of the member
+	 * @param roleId the id of the role
+	 */
+	public void addRole(Snowflake guildId, Snowflake memberId, Snowflake roleId){
+		enqueue(new Key(guildId.asLong(), memberId.asLong(), roleId.asLong()), true);
+	}
+
+	/**
+	 * queues that a member shouldn't have a role anymore
+	 * @param guildId the id of the guild
+	 * @param memberId the id of the member
+	 * @param roleId the id of the role
+	 */
+	public void removeRole(Snowflake guildId, Snowflake memberId, Snowflake roleId){
+		enqueue(new Key(guildId.asLong(), memberId.asLong(), roleId.asLong()), false);
+	}
+
+	private void enqueue(Key key, boolean add){
+		queued.increment();
+		boolean[] isNew = {false};
+		pending.compute(key, (k, mutation) -> {
+			if(mutation == null){
+				isNew[0] = true;
+				return new Mutation(add, System.nanoTime());
+			}
+			//there is already a change for this role which wasn't sent, so just change what it should do
+			coalesced.increment();
+			return new Mutation(add, mutation.queuedAt);
+		});
+		if(!isNew[0])
+			return;
+		GuildQueue queue = queues.computeIfAbsent(key.guildId, id -> new GuildQueue(new TokenBucket(guildCapacity, guildRefill)));
+		queue.keys.add(key);
+		if(queue.draining.compareAndSet(false, true))
+			drain(queue);
+	}
+
+	/**
+	 * sends the next change of a guild, and after that the next one, until the queue is empty
+	 * @param queue the queue of the guild
+	 */
+	private void drain(GuildQueue queue){
+		Key key = queue.keys.poll();
+		if(key == null){
+			queue.draining.set(false);
+			//something could've been added between the poll and the set
+			if(!queue.keys.isEmpty() && queue.draining.compareAndSet(false, true))
+				drain(queue);
+			return;
+		}
+		//after the remove, a new change of this role gets queued again
+		Mutation mutation = pending.remove(key);
+		if(mutation == null){
+			drain(queue);
+			return;
+		}
+		waitForToken(queue.bucket)
+				.then(Mono.defer(() -> apply(key, mutation)))
+				.doOnSuccess(ignored -> {
+					applied.increment();
+					lag.recordNanos(System.nanoTime() - mutation.queuedAt);
+				})
+				.onErrorResume(e -> {
+					failed.increment();
+					logger.log("Couldn't change the role " + key.roleId + " of " + key.memberId + ": " + e.getMessage());
+					return Mono.empty();
+				})
+				.subscribe(null, null, () -> drain(queue));
+	}
+
+	/**
+	 * waits until the bucket of the guild has a token
+	 */
+	private static Mono<Void> waitForToken(TokenBucket bucket){
+		return Mono.defer(() -> {
+			long now = System.nanoTime();
+			if(bucket.tryAcquire(now))
+				return Mono.empty();
+			return Mono.delay(Duration.ofNanos(Math.max(1, bucket.nanosUntilToken(now)))).then(waitForToken(bucket));
+		});
+	}
+
+	/**
+	 * sends the change to discord, the member doesn't have to be fetched for this
+	 */
+	private Mono<Void> apply(Key key, Mutation mutation){
+		if(mutation.add)
+			return client.rest().getGuildService().addGuildMemberRole(key.guildId, key.memberId, key.roleId, null);
+		return client.rest().getGuildService().removeGuildMemberRole(key.guildId, key.memberId, key.roleId, null);
+	}
+
+	//getter for the metrics
+
+	/**
+	 * @return how many changes weren't sent yet
+	 */
+	public int getDepth(){
+		return pending.size();
+	}
+
+	public long getQueued(){
+		return queued.sum();
+	}
+
+	public long getCoalesced(){
+		return coalesced.sum();
+	}
+
+	public long getApplied(){
+		return applied.sum();
+	}
+
+	public long getFailed(){
+		return failed.sum();
+	}
+
+	public LatencyHistogram getLag(){
+		return lag;
+	}
+
+	/**
+	 * the metrics as a line of text, for the stats
+	 * @return the text
+	 */
+	public String render(){
+		return String.format("role queue: depth %d, queued %d, coalesced %d, applied %d, failed %d, lag p50 %.1fms, p99 %.1fms%n",
+				getDepth(), getQueued(), getCoalesced(), getApplied(), getFailed(),
+				lag.percentileMicros(50) / 1000.0, lag.percentileMicros(99) / 1000.0);
+	}
+}
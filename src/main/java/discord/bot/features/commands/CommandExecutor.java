@@ -0,0 +1,148 @@
+package discord.bot.features.commands;
+
+import discord.logger.DiscordLogger;
+import discord4j.common.util.Snowflake;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * this class runs the commands, so the thread which receives the events never has to wait for a command
+ * the commands run on a bounded pool of threads, every command has a timeout after which it gets cancelled
+ * and there is a limit of how many commands can be running or waiting at the same time (overall and per guild)
+ * so a lot of commands in one guild can't make every other guild wait
+ */
+public class CommandExecutor {
+
+	//the threads where the (blocking) commands run on
+	private static final int THREAD_CAP = 4 * Runtime.getRuntime().availableProcessors();
+	//how many commands can wait for a free thread
+	private static final int QUEUED_TASK_CAP = 256;
+	//the threads are shared by every blocking requirement and executable
+	private static final Scheduler SCHEDULER = Schedulers.newBoundedElastic(THREAD_CAP, QUEUED_TASK_CAP, "commands");
+
+	//how many commands can be running or waiting at the same time
+	//a command only has one task on the scheduler at a time (its requirements and its executable run one after another)
+	//so this is also the limit of the tasks, and the scheduler never has to reject one
+	private static final int MAX_IN_FLIGHT = THREAD_CAP + QUEUED_TASK_CAP;
+	//how many commands of a single guild can be running or waiting at the same time
+	private static final int MAX_IN_FLIGHT_PER_GUILD = 8;
+	//after this time a command gets cancelled, if the command doesn't have its own timeout
+	private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+	private final DiscordLogger logger;
+
+	//the amount of running/waiting commands
+	private final AtomicInteger inFlight = new AtomicInteger();
+	//the amount of running/waiting commands by guild id (dms have the key 0)
+	private final Map<Long, Integer> inFlightByGuild = new ConcurrentHashMap<>();
+
+	//the metrics
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	public CommandExecutor(DiscordLogger logger){
+		this.logger = logger;
+	}
+
+	/**
+	 * the scheduler where the blocking parts of the commands run on
+	 * @return the bounded scheduler of the commands
+	 */
+	public static Scheduler scheduler(){
+		return SCHEDULER;
+	}
+
+	/**
+	 * runs a command on the pool, if there is space for it
+	 * @param name the name of the command (for logging)
+	 * @param guildId the id of the guild where the command was sent in, or null if it was a dm
+	 * @param command the command itself
+	 * @param timeout the timeout of the command or null if the default timeout should be used
+	 * @return returns false if the command was rejected, because there are too many commands already
+	 */
+	public boolean submit(String name, Snowflake guildId, Mono<Void> command, Duration timeout){
+		final long guildKey = guildId == null ? 0 : guildId.asLong();
+		//first check if there is space for the command overall and in the guild
+		if(inFlight.incrementAndGet() > MAX_IN_FLIGHT){
+			inFlight.decrementAndGet();
+			rejected.increment();
+			return false;
+		}
+		if(inFlightByGuild.merge(guildKey, 1, Integer::sum) > MAX_IN_FLIGHT_PER_GUILD){
+			release(guildKey);
+			rejected.increment();
+			return false;
+		}
+		submitted.increment();
+
+		//the command isn't subscribed on the scheduler as a whole, that would be a second task next to the task of
+		//the requirement or executable which is running, the blocking parts move to the scheduler by themselves
+		//and everything else doesn't block, so the event thread only subscribes
+		command
+				//the timeout cancels the command, if it takes too long
+				.timeout(timeout == null ? DEFAULT_TIMEOUT : timeout)
+				.doFinally(signal -> release(guildKey))
+				.subscribe(null, error -> {
+					if(error instanceof TimeoutException) {
+						timedOut.increment();
+						logger.log("Command **" + name + "** timed out and was cancelled");
+					}
+					else {
+						failed.increment();
+						logger.log("Command **" + name + "** failed: " + error.getMessage());
+					}
+				}, completed::increment);
+		return true;
+	}
+
+	/**
+	 * frees the space of a command, when its done
+	 * @param guildKey the id of the guild of the command
+	 */
+	private void release(long guildKey){
+		inFlight.decrementAndGet();
+		//remove the entry of the guild if there are no commands left
+		inFlightByGuild.computeIfPresent(guildKey, (key, amount) -> amount <= 1 ? null : amount - 1);
+	}
+
+	//getter for the metrics
+
+	public int getInFlight(){
+		return inFlight.get();
+	}
+
+	public int getMaxInFlight(){
+		return MAX_IN_FLIGHT;
+	}
+
+	public long getSubmitted(){
+		return submitted.sum();
+	}
+
+	public long getCompleted(){
+		return completed.sum();
+	}
+
+	public long getFailed(){
+		return failed.sum();
+	}
+
+	public long getTimedOut(){
+		return timedOut.sum();
+	}
+
+	public long getRejected(){
+		return rejected.sum();
+	}
+}
@@ -4,33 +4,56 @@ import discord.logger.DiscordLogger;
 import discord.bot.features.commands.parts.Command;
 import discord.bot.features.commands.parts.CommandRequirement;
 import discord.bot.features.commands.parts.Executable;
-import discord.utility.BotUtility;
+import discord.bot.features.commands.parts.ParsedCommand;
 import discord.utility.Description;
 import discord.utility.MemManager;
+import discord.utility.SnowflakeMap;
+import discord.utility.Utility;
+import discord4j.common.util.Snowflake;
 import discord4j.core.GatewayDiscordClient;
 import discord4j.core.object.entity.Guild;
 import discord4j.core.object.entity.Message;
 import discord4j.core.object.entity.channel.MessageChannel;
 import discord4j.rest.util.Permission;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CommandHandler {
 
 	private final Map<String, Command> availableCommands;
-	private final Map<Guild, String> prefixes;
+	//the prefix of every guild, by the id of the guild
+	private final SnowflakeMap<String> prefixes;
 
 	private static final String DEFAULT_PREFIX = "!";
+	//discord doesn't allow longer messages
+	private static final int MESSAGE_LIMIT = 2000;
+	//a prefix is shown in the help pages, so it can't be arbitrarily long
+	private static final int MAX_PREFIX_LENGTH = 20;
+	private static final String HELP_SEPARATOR = "-------------------------------\n";
+
+	//the rendered pages of the help command by prefix, so they don't have to be built on every call
+	//they get cleared when the commands change
+	private final Map<String, List<String>> helpPages = new ConcurrentHashMap<>();
 
 	private final DiscordLogger logger;
 	private final GatewayDiscordClient client;
+	//runs the commands, so the event thread doesn't have to wait for them
+	private final CommandExecutor executor;
+	//limits how many commands a user/guild can execute
+	private final RateLimiter rateLimiter;
+	//the statistics of the commands
+	private final CommandMetrics metrics;
 
 	public CommandHandler(DiscordLogger logger, GatewayDiscordClient client){
 		this.logger = logger;
 		this.client = client;
+		executor = new CommandExecutor(logger);
+		rateLimiter = new RateLimiter();
+		metrics = new CommandMetrics(executor, rateLimiter);
 		availableCommands = new LinkedHashMap<>();
-		prefixes = MemManager.loadPrefixes(client);
-		fillUpPrefixMissingGuilds();
+		prefixes = MemManager.loadPrefixes();
 		addMiscCommands();
 	}
 
@@ -42,7 +65,7 @@ public class CommandHandler {
 	 * @return the command of the hashMap if there was a collision
 	 */
 	public Command addCommand(String name, Executable executable, Description description){
-		return availableCommands.put(name, new Command(executable, description));
+		return addCommand(name, new Command(executable, description));
 	}
 	/**
 	 * adds a command to the list of available commands
@@ -53,7 +76,7 @@ public class CommandHandler {
 	 * @return the command of the hashMap if there was a collision
 	 */
 	public Command addCommand(String name, Executable executable, List<CommandRequirement> requirements, Description description){
-		return availableCommands.put(name, new Command(requirements, executable, description));
+		return addCommand(name, new Command(requirements, executable, description));
 	}
 
 	/**
@@ -63,6 +86,7 @@ public class CommandHandler {
 	 * @return the command of the hashMap if there was a collision
 	 */
 	public Command addCommand(String name, Command command){
+		helpPages.clear();
 		return availableCommands.put(name, command);
 	}
 
@@ -71,6 +95,7 @@ public class CommandHandler {
 	 * @param commands the map for the names and the commands itself
 	 */
 	public void addCommands(Map<String, Command> commands){
+		helpPages.clear();
 		availableCommands.putAll(commands);
 	}
 
@@ -81,6 +106,7 @@ public class CommandHandler {
 	 * @return returns the command
 	 */
 	public Command remove(String key){
+		helpPages.clear();
 		return availableCommands.remove(key);
 	}
 
@@ -91,31 +117,75 @@ public class CommandHandler {
 	 * @return returns if somthing has been removed
 	 */
 	public boolean remove(String key, Command command){
+		helpPages.clear();
 		return availableCommands.remove(key, command);
 	}
 
 	/**
 	 * this method executes a command written in a message if there was one
 	 * @param message the message the command should be in
-	 * @return false if there was the prefix, but the command is unknown
+	 * @return false if there was the prefix, but the command is unknown (and the user isn't rate limited)
 	 */
 	public boolean execute(Message message){
 		String content = message.getContent();
 		String prefix = guildPrefixOrDefault(message);
 
-		for (Map.Entry<String, Command> entry : availableCommands.entrySet()) {
-			// The variable COMMAND_PREFIX determines what initiates a commandline.
-			if (content.startsWith(prefix + entry.getKey())) {
-				logger.log("Executed command: **" + entry.getKey() + "**", message);
-				entry.getValue().execute(message);
-				return true;
-			}
+		//there is no intent of executing a command if the message doesn't start with the prefix
+		//so also return true
+		if(!content.startsWith(prefix))
+			return true;
+
+		//the name of the command is the first word after the prefix
+		//it is looked up directly, so "!playlist" can't be captured by "!play" anymore
+		String name = commandName(content, prefix);
+		Command command = availableCommands.get(name);
+
+		//check if the user or guild is allowed to execute another command right now
+		//if not only tell the user once, and not for every try
+		//unknown commands are charged too, because the bot answers them as well
+		long userId = message.getAuthor().map(author -> author.getId().asLong()).orElse(0L);
+		long guildId = message.getGuildId().map(Snowflake::asLong).orElse(0L);
+		RateLimiter.Result result = command == null
+				? rateLimiter.tryAcquire(userId, guildId)
+				: rateLimiter.tryAcquire(name, userId, guildId);
+		if(result != RateLimiter.Result.ALLOWED){
+			if(result == RateLimiter.Result.REJECTED_NOTIFY)
+				CommandRequirement.errorMessage(RateLimiter.cooldownMessage(rateLimiter.cooldownOf(userId)), message);
+			return true;
 		}
-		//so if the code comes here no command was executed,
-		//but if there was no intent of executing a command
-		//also return true
-		//there is no intent to do so if the message didn't start with the prefix
-		return !content.startsWith(prefix);
+		//so if there is no such command, the prefix was there but the command is unknown
+		if(command == null)
+			return false;
+
+		logger.log("Executed command: **" + name + "**", message);
+		//the message gets parsed once here, and then every requirement and the executable uses this
+		ParsedCommand parsedCommand = new ParsedCommand(message, prefix, name);
+		CommandStats stats = metrics.of(name);
+		final long received = System.nanoTime();
+		Mono<Void> execution = command.execute(parsedCommand, stats)
+				.doOnSuccess(ignored -> stats.recordTotal(System.nanoTime() - received));
+		//the command runs on the command pool, so the event thread doesn't wait for it
+		//if there are too many commands at the moment, then tell the user
+		boolean submitted = executor.submit(name, parsedCommand.getGuildId().orElse(null),
+				execution, command.getTimeout());
+		if(!submitted){
+			CommandRequirement.errorMessage("I'm busy right now, try the command again in a moment", message);
+		}
+		return true;
+	}
+
+	/**
+	 * this method cuts out the name of the command, which is everything between the prefix and the first space
+	 * @param content the content of the message, it has to start with the prefix
+	 * @param prefix the prefix of the guild
+	 * @return returns the name of the command (could be empty if there was just the prefix)
+	 */
+	private static String commandName(String content, String prefix){
+		int start = prefix.length();
+		int end = content.indexOf(' ', start);
+		if(end == -1)
+			end = content.length();
+		return content.substring(start, end);
 	}
 
 	/**
@@ -134,8 +204,8 @@ public class CommandHandler {
 		//only syntax requirements
 		requirements = List.of(CommandRequirement.correctSyntaxSegmentAmount(1));
 		//it just replies pong
-		executable =  message -> {
-			MessageChannel channel = message.getChannel().block();
+		executable =  command -> {
+			MessageChannel channel = command.getMessage().getChannel().block();
 			channel.createMessage("pong").block();
 		};
 		description = new Description("pings the bot -- if online the bot responds with pong");
@@ -145,8 +215,8 @@ public class CommandHandler {
 		//only syntax requirements
 		requirements = List.of(CommandRequirement.correctSyntaxSegmentAmount(1));
 		description = new Description("A more hands on approach for help");
-		executable = message ->{
-			MessageChannel channel = message.getChannel().block();
+		executable = command ->{
+			MessageChannel channel = command.getMessage().getChannel().block();
 			channel.createMessage("Moritz heul nicht rum").block();
 		};
 		addCommand("Hilfeeee", executable, description);
@@ -161,66 +231,183 @@ public class CommandHandler {
 		//for the next requirement you can assume the requirements before that are true
 		requirements.add(CommandRequirement.hasPermission(Permission.MANAGE_GUILD));
 		requirements.add(CommandRequirement.correctSyntaxSegmentAmount(2));
-		executable = message ->{
-			Guild guild = message.getGuild().block();
-			String prefix = prefixes.get(guild);
-			MessageChannel channel = message.getChannel().block();
+		executable = command ->{
+			//the command has to be in a guild
+			long guildId = command.getGuildId().get().asLong();
+			String oldPrefix = command.getPrefix();
+			MessageChannel channel = command.getMessage().getChannel().block();
 
-			String content = message.getContent();
-			//splitting the command by its spaces
+			//the content is already split by its spaces
 			//the first one is the command itself, the second should be the prefix
-			String[] contentSegments = content.split(" ");
-
 			//now if there are only two arguments the second should adjust the prefix
-			prefix = contentSegments[1];
+			String prefix = command.getSegment(1);
+			if(prefix.length() > MAX_PREFIX_LENGTH){
+				channel.createMessage("The prefix can't be longer than " + MAX_PREFIX_LENGTH + " characters").block();
+				return;
+			}
 			channel.createMessage("Okay, from now on the prefix is: **" + prefix + "**").block();
 			//finally store the new Prefix first in the prefix map and then save prefixes
-			prefixes.put(guild, prefix);
-			logger.log("Changed Prefix from: **" + prefix + "** to: **" + contentSegments[1] + "**");
-			MemManager.savePrefixes(prefixes, client);
+			prefixes.put(guildId, prefix);
+			//the old prefix is probably not used anymore, so its help doesn't have to be stored
+			helpPages.remove(oldPrefix);
+			logger.log("Changed Prefix from: **" + oldPrefix + "** to: **" + prefix + "**");
+			MemManager.savePrefix(guildId, prefix);
 		};
-		description = new Description("it changes the prefix for commands. Syntax: **!prefix $newPrefix**, no spaces in the newPrefix!");
+		description = new Description("it changes the prefix for commands. Syntax: **!prefix $newPrefix**, no spaces in the newPrefix and at most " + MAX_PREFIX_LENGTH + " characters!");
 		addCommand("prefix", executable, requirements, description);
 
+		//adding the stats command
+		//it gives out how long the commands take and how often they failed
+		//like the prefix command only for members with the permission MANAGE_SERVER
+		requirements = new LinkedList<>();
+		requirements.add(CommandRequirement.IN_GUILD);
+		requirements.add(CommandRequirement.hasPermission(Permission.MANAGE_GUILD));
+		requirements.add(CommandRequirement.correctSyntaxSegmentAmount(1));
+		description = new Description("shows how long the commands take (in ms) and how often they failed");
+		executable = command -> {
+			MessageChannel channel = command.getMessage().getChannel().block();
+			//the lines keep their line breaks, so the chunks are still a table
+			List<String> lines = List.of(metrics.render().split("(?<=\n)"));
+			//every chunk is its own code block, so the table stays aligned
+			final String codeBlock = "```";
+			for(String chunk : Utility.splitIntoChunks(lines, MESSAGE_LIMIT - 2 * codeBlock.length() - 1))
+				channel.createMessage(codeBlock + "\n" + chunk + codeBlock).block();
+		};
+		addCommand("stats", executable, requirements, description);
+
 		//adding the help command
-		//it gives out every command with a description
-		//only syntax requirements
-		requirements = List.of(CommandRequirement.correctSyntaxSegmentAmount(1));
-		description = new Description("gives out every possible command, with a description");
-		executable = message -> {
-			//first get the prefix of the guild or the default if not in the guild
-			//to accurately represent the commands
-			String prefix = guildPrefixOrDefault(message);
-			MessageChannel channel = message.getChannel().block();
-			//now build the help message
-			StringBuilder content = new StringBuilder().append("commands: \n");
-			content.append("-------------------------------\n");
-			//listing all the possible commands
-			availableCommands.forEach((name, command) -> {
-
-				content.append("**" + prefix + name + "** -> " + command.getDescription().vShort() + "\n");
-			});
-			content.append("-------------------------------\n");
-			//then send the message
-			channel.createMessage(content.toString()).block();
+		//it gives out every command with a description, split up into pages
+		//or the long description of one command
+		//syntax: !help [$page|$command]
+		requirements = List.of(CommandRequirement.correctSyntaxSegmentAmount(1, 2));
+		description = new Description("gives out every possible command, with a description. Syntax: **!help [$page|$command]**",
+				"without an argument it shows the first page of commands, with a number it shows that page, " +
+				"and with the name of a command it shows the whole description of that command");
+		executable = parsedCommand -> {
+			//the prefix used to call this command is the prefix of the guild or the default if not in the guild
+			//so it accurately represents the commands
+			String prefix = parsedCommand.getPrefix();
+			MessageChannel channel = parsedCommand.getMessage().getChannel().block();
+			String argument = parsedCommand.getSegmentAmount() == 2 ? parsedCommand.getSegment(1) : "1";
+
+			//if the argument is the name of a command, then show the description of this command
+			Command command = availableCommands.get(argument);
+			if(command != null){
+				channel.createMessage(renderCommandHelp(prefix, argument, command)).block();
+				return;
+			}
+			//otherwise it has to be a page
+			List<String> pages = helpPages.computeIfAbsent(prefix, this::renderHelpPages);
+			int page;
+			try {
+				page = Integer.parseInt(argument);
+			}
+			catch(NumberFormatException e){
+				channel.createMessage("There is no command **" + argument + "**, use **" + prefix + "help** for all the commands").block();
+				return;
+			}
+			if(page < 1 || page > pages.size()){
+				channel.createMessage("There are only " + pages.size() + " pages of commands").block();
+				return;
+			}
+			channel.createMessage(pages.get(page - 1)).block();
 		};
-		addCommand("help", executable, description);
+		addCommand("help", executable, requirements, description);
+	}
+
+	/**
+	 * this method builds the pages of the help command, every page fits into one message
+	 * @param prefix the prefix which is shown in front of the commands
+	 * @return the pages
+	 */
+	private List<String> renderHelpPages(String prefix){
+		//one line for every command
+		List<String> lines = new ArrayList<>();
+		availableCommands.forEach((name, command) ->
+				lines.add("**" + prefix + name + "** -> " + command.getDescription().vShort() + "\n"));
+
+		//the space for the header and footer of a page, they contain the prefix and the page numbers
+		//there can't be more pages than commands, so that is the longest page number
+		int mostPages = Math.max(lines.size(), 1);
+		int frameLength = helpHeader(mostPages, mostPages).length() + helpFooter(prefix, mostPages, mostPages + 1).length();
+		List<String> bodies = Utility.splitIntoChunks(lines, MESSAGE_LIMIT - frameLength);
+		List<String> pages = new ArrayList<>();
+		for(int i = 0; i < bodies.size(); i++)
+			pages.add(helpHeader(i + 1, bodies.size()) + bodies.get(i) + helpFooter(prefix, i + 1, bodies.size()));
+		return pages;
+	}
+
+	/**
+	 * @param page the number of the page
+	 * @param pages the amount of pages
+	 * @return the header of a help page
+	 */
+	private static String helpHeader(int page, int pages){
+		return "commands (page " + page + "/" + pages + "): \n" + HELP_SEPARATOR;
+	}
+
+	/**
+	 * @param prefix the prefix which is shown in front of the help command
+	 * @param page the number of the page
+	 * @param pages the amount of pages
+	 * @return the footer of a help page, with the help command for the next page if there is one
+	 */
+	private static String helpFooter(String prefix, int page, int pages){
+		String footer = HELP_SEPARATOR;
+		if(page < pages)
+			footer += "next page: **" + prefix + "help " + (page + 1) + "**\n";
+		return footer + "details of a command: **" + prefix + "help $command**\n";
+	}
+
+	/**
+	 * this method builds the help of a single command with its long description
+	 * @param prefix the prefix which is shown in front of the command
+	 * @param name the name of the command
+	 * @param command the command
+	 * @return the message
+	 */
+	private static String renderCommandHelp(String prefix, String name, Command command){
+		Description description = command.getDescription();
+		String content = "**" + prefix + name + "** -> " + description.vShort();
+		if(!description.vLong().isEmpty())
+			content += "\n" + description.vLong();
+		//the description could be too long for one message
+		return content.length() > MESSAGE_LIMIT ? content.substring(0, MESSAGE_LIMIT) : content;
 	}
 
 	/**
 	 * this method gets the prefix of the guild, or if the message was sent in a dm the default prefix
+	 * this runs for every message, so it only uses the guild id of the message and doesn't fetch anything
 	 * @param message contains in which guild/dm the message was sent
 	 * @return returns the right prefix, which will be used to interpret commands
 	 */
 	private String guildPrefixOrDefault(Message message){
+		return guildPrefixOrDefault(message.getGuildId().orElse(null));
+	}
+
+	/**
+	 * this method gets the prefix of the guild, or the default prefix
+	 * @param guildId the id of the guild, or null if there is no guild (dm)
+	 * @return returns the right prefix, which will be used to interpret commands
+	 */
+	public String guildPrefixOrDefault(Snowflake guildId){
 		//if you are in a guild return the set prefix of that guild, except if there is no entry for it
 		//then return the default prefix, as well as when you are not in a guild
-		if(BotUtility.inGuild(message)){
-			String prefix = prefixes.get(message.getGuild().block());
-			if(prefix != null)
-				return prefix;
-		}
-		return DEFAULT_PREFIX;
+		if(guildId == null)
+			return DEFAULT_PREFIX;
+		return prefixes.getOrDefault(guildId.asLong(), DEFAULT_PREFIX);
+	}
+
+	public CommandExecutor getExecutor(){
+		return executor;
+	}
+
+	public RateLimiter getRateLimiter(){
+		return rateLimiter;
+	}
+
+	public CommandMetrics getMetrics(){
+		return metrics;
 	}
 
 	/**
@@ -228,13 +415,6 @@ public class CommandHandler {
 	 * @param guild the guild to insert
 	 */
 	public void addToPrefixes(Guild guild){
-		prefixes.putIfAbsent(guild,DEFAULT_PREFIX);
-	}
-
-	/**
-	 * checks every guild the bot is on, and in every guild there is no set prefix set it to the default one
-	 */
-	private void fillUpPrefixMissingGuilds(){
-		client.getGuilds().toStream().forEach(this::addToPrefixes);
+		prefixes.putIfAbsent(guild.getId().asLong(), DEFAULT_PREFIX);
 	}
 }
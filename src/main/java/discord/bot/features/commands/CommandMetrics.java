@@ -0,0 +1,80 @@
+package discord.bot.features.commands;
+
+import discord.utility.LatencyHistogram;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * stores the statistics of every command, and the metrics of the executor and the rate limiter
+ * and renders them as text, for the stats command and the local stats endpoint
+ */
+public class CommandMetrics {
+
+	//the statistics by the name of the command
+	private final Map<String, CommandStats> statsByCommand = new ConcurrentHashMap<>();
+
+	private final CommandExecutor executor;
+	private final RateLimiter rateLimiter;
+	//the metrics of other features, which are rendered after the ones of the commands
+	private final List<Supplier<String>> sources = new CopyOnWriteArrayList<>();
+
+	public CommandMetrics(CommandExecutor executor, RateLimiter rateLimiter){
+		this.executor = executor;
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * gets the statistics of a command, if there are none yet they get created
+	 * @param name the name of the command
+	 * @return the statistics
+	 */
+	public CommandStats of(String name){
+		return statsByCommand.computeIfAbsent(name, key -> new CommandStats());
+	}
+
+	/**
+	 * adds the metrics of another feature (e.g.: the role queue) to the rendered text
+	 * @param source renders the metrics of the feature, with a line break at the end
+	 */
+	public void addSource(Supplier<String> source){
+		sources.add(source);
+	}
+
+	/**
+	 * renders all the metrics as a table
+	 * the latencies are in milliseconds
+	 * @return the text
+	 */
+	public String render(){
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%-14s %6s %6s %5s %9s %9s %9s %9s %9s %9s%n",
+				"command", "ok", "unmet", "err", "req p50", "req p99", "exec p50", "exec p99", "total p50", "total p99"));
+		//sorted by name, so the output is always in the same order
+		new TreeMap<>(statsByCommand).forEach((name, stats) -> builder.append(String.format("%-14s %6d %6d %5d %9s %9s %9s %9s %9s %9s%n",
+				name, stats.getSuccesses(), stats.getRequirementFailures(), stats.getExceptions(),
+				millis(stats.getRequirementTime(), 50), millis(stats.getRequirementTime(), 99),
+				millis(stats.getExecutionTime(), 50), millis(stats.getExecutionTime(), 99),
+				millis(stats.getTotalTime(), 50), millis(stats.getTotalTime(), 99))));
+		builder.append(String.format("%nexecutor: in flight %d/%d, submitted %d, completed %d, failed %d, timed out %d, rejected %d%n",
+				executor.getInFlight(), executor.getMaxInFlight(), executor.getSubmitted(), executor.getCompleted(),
+				executor.getFailed(), executor.getTimedOut(), executor.getRejected()));
+		builder.append(String.format("rate limiter: rejected by user %d, by guild %d, by command %d%n",
+				rateLimiter.getRejectedByUser(), rateLimiter.getRejectedByGuild(), rateLimiter.getRejectedByCommand()));
+		sources.forEach(source -> builder.append(source.get()));
+		return builder.toString();
+	}
+
+	/**
+	 * a percentile of a histogram in milliseconds, with one decimal
+	 */
+	private static String millis(LatencyHistogram histogram, double percentile){
+		if(histogram.getCount() == 0)
+			return "-";
+		return String.format("%.1f", histogram.percentileMicros(percentile) / 1000.0);
+	}
+}
@@ -0,0 +1,73 @@
+package discord.bot.features.commands;
+
+import discord.utility.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the statistics of a single command
+ * how long the requirement checks and the execution took, and how often it succeeded or failed
+ */
+public class CommandStats {
+
+	//the time it took to fetch the data for the requirements and check them
+	private final LatencyHistogram requirementTime = new LatencyHistogram();
+	//the time it took to execute the command, after the requirements were met
+	private final LatencyHistogram executionTime = new LatencyHistogram();
+	//the whole time from receiving the message until the command was done (waiting for a thread included)
+	private final LatencyHistogram totalTime = new LatencyHistogram();
+
+	private final LongAdder successes = new LongAdder();
+	private final LongAdder requirementFailures = new LongAdder();
+	private final LongAdder exceptions = new LongAdder();
+
+	public void recordRequirements(long nanos){
+		requirementTime.recordNanos(nanos);
+	}
+
+	public void recordExecution(long nanos){
+		executionTime.recordNanos(nanos);
+	}
+
+	public void recordTotal(long nanos){
+		totalTime.recordNanos(nanos);
+	}
+
+	public void success(){
+		successes.increment();
+	}
+
+	public void requirementFailure(){
+		requirementFailures.increment();
+	}
+
+	public void exception(){
+		exceptions.increment();
+	}
+
+	//getter & setter
+
+	public LatencyHistogram getRequirementTime(){
+		return requirementTime;
+	}
+
+	public LatencyHistogram getExecutionTime(){
+		return executionTime;
+	}
+
+	public LatencyHistogram getTotalTime(){
+		return totalTime;
+	}
+
+	public long getSuccesses(){
+		return successes.sum();
+	}
+
+	public long getRequirementFailures(){
+		return requirementFailures.sum();
+	}
+
+	public long getExceptions(){
+		return exceptions.sum();
+	}
+}
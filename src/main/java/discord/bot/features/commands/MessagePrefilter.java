@@ -0,0 +1,42 @@
+package discord.bot.features.commands;
+
+import discord.bot.SorakaBot;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.User;
+
+import java.util.Optional;
+
+/**
+ * this class decides if a message could be a command, before any handler gets the message
+ * it only uses what is already in the event, so it never has to ask discord for anything
+ * most messages are no commands, and these get dropped right here
+ */
+public class MessagePrefilter {
+
+	private final CommandHandler commandHandler;
+
+	public MessagePrefilter(CommandHandler commandHandler){
+		this.commandHandler = commandHandler;
+	}
+
+	/**
+	 * checks if a message could be a command
+	 * @param event the event of the new message
+	 * @return false if the message can't be a command
+	 */
+	public boolean mightBeCommand(MessageCreateEvent event){
+		Message message = event.getMessage();
+		//messages without an author and messages of webhooks are no commands
+		Optional<User> optAuthor = message.getAuthor();
+		if(optAuthor.isEmpty() || message.getWebhookId().isPresent())
+			return false;
+		User author = optAuthor.get();
+		//messages of bots (this bot included) are also ignored
+		if(author.isBot() || SorakaBot.isSelf(author.getId()))
+			return false;
+		//and finally the message has to start with the prefix of the guild
+		String prefix = commandHandler.guildPrefixOrDefault(event.getGuildId().orElse(null));
+		return message.getContent().startsWith(prefix);
+	}
+}
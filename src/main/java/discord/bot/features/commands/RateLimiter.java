@@ -0,0 +1,226 @@
+package discord.bot.features.commands;
+
+import discord.utility.TokenBucket;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * this class limits how many commands a user, a guild and a user per command can execute
+ * every one of those has a token bucket, and a command needs a token of each of them
+ * so a single user can't spam commands, which would make discord limit the bot in every guild
+ */
+public class RateLimiter {
+
+	/**
+	 * the result of trying to execute a command
+	 */
+	public enum Result {
+		//the command can be executed
+		ALLOWED,
+		//the command was rejected, and the user should be told
+		REJECTED_NOTIFY,
+		//the command was rejected, but the user was already told
+		REJECTED
+	}
+
+	/**
+	 * the configuration of a bucket
+	 */
+	public static class Limit {
+		private final int capacity;
+		private final Duration refillTime;
+
+		/**
+		 * @param capacity how many commands can be executed at once
+		 * @param refillTime the time it takes until one more command can be executed
+		 */
+		public Limit(int capacity, Duration refillTime){
+			this.capacity = capacity;
+			this.refillTime = refillTime;
+		}
+
+		private TokenBucket newBucket(){
+			return new TokenBucket(capacity, refillTime);
+		}
+	}
+
+	//the default limits
+	public static final Limit DEFAULT_USER_LIMIT = new Limit(5, Duration.ofSeconds(2));
+	public static final Limit DEFAULT_GUILD_LIMIT = new Limit(30, Duration.ofMillis(200));
+	public static final Limit DEFAULT_COMMAND_LIMIT = new Limit(2, Duration.ofSeconds(3));
+
+	//if a map has more buckets than this, the full ones get removed (they are the same as a new bucket)
+	private static final int PRUNE_THRESHOLD = 10_000;
+
+	private final Limit userLimit;
+	private final Limit guildLimit;
+	private final Limit commandLimit;
+
+	//the buckets, by user id, guild id and command name + user id
+	private final Map<Long, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+	private final Map<Long, TokenBucket> guildBuckets = new ConcurrentHashMap<>();
+	private final Map<String, Map<Long, TokenBucket>> commandBuckets = new ConcurrentHashMap<>();
+	//until when (System.nanoTime()) a user was told about the cooldown, by user id
+	private final Map<Long, Long> notifiedUntil = new ConcurrentHashMap<>();
+
+	//the metrics
+	private final LongAdder rejectedByUser = new LongAdder();
+	private final LongAdder rejectedByGuild = new LongAdder();
+	private final LongAdder rejectedByCommand = new LongAdder();
+
+	public RateLimiter(Limit userLimit, Limit guildLimit, Limit commandLimit){
+		this.userLimit = userLimit;
+		this.guildLimit = guildLimit;
+		this.commandLimit = commandLimit;
+	}
+
+	public RateLimiter(){
+		this(DEFAULT_USER_LIMIT, DEFAULT_GUILD_LIMIT, DEFAULT_COMMAND_LIMIT);
+	}
+
+	/**
+	 * tries to take a token for a command
+	 * if one of the buckets is empty, the tokens already taken from the others are given back
+	 * @param commandName the name of the command
+	 * @param userId the id of the user who executes the command
+	 * @param guildId the id of the guild, or 0 if the command was sent in a dm
+	 * @return if the command can be executed and if not whether the user should be told
+	 */
+	public Result tryAcquire(String commandName, long userId, long guildId){
+		long now = System.nanoTime();
+		TokenBucket commandBucket = commandBuckets.computeIfAbsent(commandName, name -> new ConcurrentHashMap<>())
+				.computeIfAbsent(userId, id -> commandLimit.newBucket());
+		return tryAcquire(commandBucket, userId, guildId, now);
+	}
+
+	/**
+	 * tries to take a token for a message which isn't a known command
+	 * it only uses the buckets of the user and the guild, because there is no command to have a bucket for
+	 * otherwise every made up name would get its own buckets
+	 * @param userId the id of the user who sent the message
+	 * @param guildId the id of the guild, or 0 if the message was sent in a dm
+	 * @return if the message can be answered and if not whether the user should be told
+	 */
+	public Result tryAcquire(long userId, long guildId){
+		return tryAcquire(null, userId, guildId, System.nanoTime());
+	}
+
+	/**
+	 * takes a token of every bucket, or of none if one of them is empty
+	 * @param commandBucket the bucket of the command and the user, or null if there is no command
+	 * @param userId the id of the user
+	 * @param guildId the id of the guild, or 0 for a dm
+	 * @param now the current time
+	 * @return the result
+	 */
+	private Result tryAcquire(TokenBucket commandBucket, long userId, long guildId, long now){
+		TokenBucket userBucket = userBuckets.computeIfAbsent(userId, id -> userLimit.newBucket());
+
+		//first the buckets of the user, so a single user can't use up the tokens of the whole guild
+		TokenBucket rejectedBy = null;
+		if(commandBucket != null && !commandBucket.tryAcquire(now)){
+			rejectedByCommand.increment();
+			rejectedBy = commandBucket;
+		}
+		else if(!userBucket.tryAcquire(now)){
+			rejectedByUser.increment();
+			rejectedBy = userBucket;
+			//the command wasn't executed, so it doesn't use up the token of the command
+			if(commandBucket != null)
+				commandBucket.refund();
+		}
+		else if(guildId != 0){
+			TokenBucket guildBucket = guildBuckets.computeIfAbsent(guildId, id -> guildLimit.newBucket());
+			if(!guildBucket.tryAcquire(now)){
+				rejectedByGuild.increment();
+				rejectedBy = guildBucket;
+				if(commandBucket != null)
+					commandBucket.refund();
+				userBucket.refund();
+			}
+		}
+		pruneIfNeeded(now);
+
+		if(rejectedBy == null)
+			return Result.ALLOWED;
+		return shouldNotify(userId, now, rejectedBy.nanosUntilToken(now)) ? Result.REJECTED_NOTIFY : Result.REJECTED;
+	}
+
+	/**
+	 * checks if the user should be told about the cooldown, this only happens once until the cooldown is over
+	 * so spamming a command doesn't mean the bot spams cooldown messages
+	 * @param userId the user
+	 * @param now the current time
+	 * @param cooldown the time until the next token
+	 * @return if the user should be notified
+	 */
+	private boolean shouldNotify(long userId, long now, long cooldown){
+		boolean[] notify = {false};
+		notifiedUntil.compute(userId, (id, until) -> {
+			if(until != null && until - now > 0)
+				return until;
+			notify[0] = true;
+			return now + cooldown;
+		});
+		return notify[0];
+	}
+
+	/**
+	 * removes the buckets which are full again, because they would be the same as a new one
+	 * @param now the current time
+	 */
+	private void pruneIfNeeded(long now){
+		if(userBuckets.size() > PRUNE_THRESHOLD)
+			userBuckets.values().removeIf(bucket -> bucket.isFull(now));
+		if(guildBuckets.size() > PRUNE_THRESHOLD)
+			guildBuckets.values().removeIf(bucket -> bucket.isFull(now));
+		commandBuckets.values().forEach(buckets -> {
+			if(buckets.size() > PRUNE_THRESHOLD)
+				buckets.values().removeIf(bucket -> bucket.isFull(now));
+		});
+		if(notifiedUntil.size() > PRUNE_THRESHOLD)
+			notifiedUntil.values().removeIf(until -> until - now <= 0);
+	}
+
+	/**
+	 * the cooldown message for a user
+	 * @param nanos the time until the next command
+	 * @return the message
+	 */
+	public static String cooldownMessage(long nanos){
+		long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos));
+		return "Slow down! You can use commands again in " + seconds + "s";
+	}
+
+	/**
+	 * the time until the user can execute a command again
+	 * @param userId the id of the user
+	 * @return the time in nanos
+	 */
+	public long cooldownOf(long userId){
+		Long until = notifiedUntil.get(userId);
+		return until == null ? 0 : Math.max(0, until - System.nanoTime());
+	}
+
+	//getter for the metrics
+
+	public long getRejectedByUser(){
+		return rejectedByUser.sum();
+	}
+
+	public long getRejectedByGuild(){
+		return rejectedByGuild.sum();
+	}
+
+	public long getRejectedByCommand(){
+		return rejectedByCommand.sum();
+	}
+
+	public long getRejected(){
+		return getRejectedByUser() + getRejectedByGuild() + getRejectedByCommand();
+	}
+}
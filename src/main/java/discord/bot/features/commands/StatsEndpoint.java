@@ -0,0 +1,42 @@
+package discord.bot.features.commands;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * a small http endpoint on localhost, where the command metrics can be pulled from (GET /stats)
+ * it only listens on the loopback address, so it isn't reachable from outside the machine
+ */
+public class StatsEndpoint {
+
+	private final HttpServer server;
+
+	/**
+	 * starts the endpoint
+	 * @param port the port on localhost
+	 * @param stats gives out the current metrics as text
+	 * @throws IOException if the port can't be used
+	 */
+	public StatsEndpoint(int port, Supplier<String> stats) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/stats", exchange -> {
+			byte[] body = stats.get().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try(OutputStream os = exchange.getResponseBody()){
+				os.write(body);
+			}
+		});
+		server.start();
+	}
+
+	public void stop(){
+		server.stop(0);
+	}
+}
@@ -1,51 +1,106 @@
 package discord.bot.features.commands.parts;
 
 import discord.bot.SorakaBot;
+import discord.bot.features.commands.CommandStats;
 import discord.utility.Description;
-import discord4j.core.object.entity.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class Command {
 
 	//the method the command executes
-	private Executable command;
+	private ReactiveExecutable command;
 	//a list of methods which all have to be true, that the command can be executed
-	private List<CommandRequirement> requirements;
+	private List<ReactiveRequirement> requirements;
 	//the description of what the command does
 	private Description description;
+	//the data all the requirements together need from discord
+	private Set<RequiredData> requiredData;
+	//after this time the command gets cancelled, if its null the default timeout of the CommandExecutor is used
+	private Duration timeout;
 
 
 	public Command(List<CommandRequirement> requirements, Executable command, Description description){
-		this.requirements = new ArrayList<>(requirements);
-		this.command = command;
+		this.requirements = new ArrayList<>();
+		requirements.forEach(requirement -> this.requirements.add(ReactiveRequirement.of(requirement)));
+		this.command = ReactiveExecutable.of(command);
 		this.description = description;
+		this.requiredData = collectRequiredData(this.requirements);
 	}
 
 	public Command(Executable command, Description description){
+		this(new ArrayList<>(), command, description);
+	}
+
+	public Command(List<ReactiveRequirement> requirements, ReactiveExecutable command, Description description){
+		this.requirements = new ArrayList<>(requirements);
 		this.command = command;
-		requirements = new ArrayList<>();
 		this.description = description;
+		this.requiredData = collectRequiredData(this.requirements);
+	}
+
+	/**
+	 * collects the data every requirement needs into one set, so it can be fetched at once
+	 * @param requirements the requirements
+	 * @return the union of all the needed data
+	 */
+	private static Set<RequiredData> collectRequiredData(List<ReactiveRequirement> requirements){
+		Set<RequiredData> requiredData = EnumSet.noneOf(RequiredData.class);
+		requirements.forEach(requirement -> requiredData.addAll(requirement.requiredData()));
+		return requiredData;
 	}
 
 	/**
 	 * this method executes the command if the requirements are true
-	 * @param message the message where the command is described
+	 * the data the requirements need is fetched once and in parallel beforehand
+	 * then the requirements are checked one after another, and if one is not met the rest doesn't get checked
+	 * @param parsedCommand the parsed message where the command is described
+	 * @param stats the statistics of the command, where the time of the requirements and the execution gets recorded
+	 * @return a Mono which completes when the command is done (or the requirements were not met)
 	 */
-	public void execute(Message message){
-		//first check if all the requirements are met
-		for (CommandRequirement requirement : requirements) {
-			if(!requirement.check(message)){
-				SorakaBot.getLogger().log("Requirements for command not met");
-				return;
-			}
-		}
-		//if so then execute the command
-		command.execute(message);
+	public Mono<Void> execute(ParsedCommand parsedCommand, CommandStats stats){
+		return Mono.defer(() -> {
+			final long start = System.nanoTime();
+			//first fetch everything the requirements need, then check if all the requirements are met
+			//concatMap checks them in order, and all() cancels the rest as soon as one is false
+			return parsedCommand.prefetch(requiredData)
+					.thenMany(Flux.fromIterable(requirements))
+					.concatMap(requirement -> requirement.check(parsedCommand))
+					.all(Boolean::booleanValue)
+					.flatMap(met -> {
+						final long checked = System.nanoTime();
+						stats.recordRequirements(checked - start);
+						if(!met){
+							stats.requirementFailure();
+							SorakaBot.getLogger().log("Requirements for command not met");
+							return Mono.empty();
+						}
+						//if so then execute the command
+						return command.execute(parsedCommand)
+								.doOnSuccess(ignored -> {
+									stats.recordExecution(System.nanoTime() - checked);
+									stats.success();
+								});
+					})
+					.doOnError(error -> stats.exception());
+		});
 	}
 
 	public Description getDescription(){
 		return description;
 	}
+
+	public Duration getTimeout(){
+		return timeout;
+	}
+
+	public void setTimeout(Duration timeout){
+		this.timeout = timeout;
+	}
 }
@@ -2,27 +2,29 @@ package discord.bot.features.commands.parts;
 
 import discord.bot.SorakaBot;
 import discord.utility.BotUtility;
-import discord4j.core.object.entity.Guild;
 import discord4j.core.object.entity.Member;
 import discord4j.core.object.entity.Message;
-import discord4j.core.object.entity.channel.MessageChannel;
 import discord4j.rest.util.Permission;
 
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * this interface is a single method interface
  * which has a check method, this is used to check if a command is valid
  * a Command object stores a list of requirements which have to be true, that the command can get approved
  * for a normal requirement it is normal give out an errorMessage if its false
+ * a requirement can declare the data it needs from discord, then the command fetches it beforehand (see RequiredData)
  */
 public interface CommandRequirement {
 	//some common requirements
-	CommandRequirement IN_GUILD = message -> {
-												boolean result = BotUtility.inGuild(message);
+	//whether the message was sent in a guild is known from the message itself, so nothing has to be fetched
+	CommandRequirement IN_GUILD = command -> {
+												boolean result = command.inGuild();
 												//if the requirement wasn't met then make an errorMessage
 												if(!result){
-													CommandRequirement.errorMessage("This command can only be used in guilds!", message);
+													CommandRequirement.errorMessage("This command can only be used in guilds!", command.getMessage());
 												}
 												return result;
 											};
@@ -30,18 +32,49 @@ public interface CommandRequirement {
 
 	/**
 	 * checks if the a requirement is met
-	 * @param message the message with the needed information to check if everything is right
+	 * @param command the parsed command with the needed information to check if everything is right
 	 * @return returns if the requirement is met
 	 */
-	boolean check(Message message);
+	boolean check(ParsedCommand command);
+
+	/**
+	 * the data this requirement needs from discord, it gets fetched before the requirement is checked
+	 * @return the needed data, by default nothing
+	 */
+	default Set<RequiredData> requiredData(){
+		return EnumSet.noneOf(RequiredData.class);
+	}
+
+	/**
+	 * makes a requirement which declares the data it needs
+	 * @param requirement the requirement itself
+	 * @param first the first needed data
+	 * @param rest the rest of the needed data
+	 * @return returns the requirement with the declared data
+	 */
+	static CommandRequirement requiring(CommandRequirement requirement, RequiredData first, RequiredData... rest){
+		final Set<RequiredData> requiredData = EnumSet.of(first, rest);
+		return new CommandRequirement() {
+			@Override
+			public boolean check(ParsedCommand command) {
+				return requirement.check(command);
+			}
+
+			@Override
+			public Set<RequiredData> requiredData() {
+				return requiredData;
+			}
+		};
+	}
 
 	/**
 	 * makes an errorMessage for a not met requirement (that's how it's intended) this is a redundant method just so it looks better
+	 * the errorMessage gets merged with the other messages of the bot for this channel (if they are sent at about the same time)
 	 * @param content the content of the error message
 	 * @param message it contains the channel where the message was sent to reply
 	 */
 	static void errorMessage(String content, Message message){
-		message.getChannel().subscribe(channel -> channel.createMessage(content).subscribe());
+		SorakaBot.getMessageService().send(message.getChannelId(), content);
 	}
 
 	/**
@@ -51,19 +84,20 @@ public interface CommandRequirement {
 	 * @return returns a method(1 method interface) which where it checks if said permissions are met
 	 */
 	static CommandRequirement hasPermissions(final Permission... permissions){
-		return message -> {
+		return requiring(command -> {
 			//because its required that this message was sent in a guild
 			//i can assume there will be no error getting the author as a member
-			Member author = message.getAuthorAsMember().block();
+			//the author and its permissions are already fetched, so this doesn't wait
+			Member author = command.getAuthor().block();
 			//now check if every permission is in the list of basePermissions of the author
-			boolean result = author.getBasePermissions().block().containsAll(Arrays.asList(permissions));
+			boolean result = command.getAuthorPermissions().block().containsAll(Arrays.asList(permissions));
 			if(!result){
 				CommandRequirement.errorMessage("Sorry " + BotUtility.getNameInGuild(author) +
-								", you have to have the permission: **\"" + permissions + "\"**  to execute this command!"
-						, message);
+								", you have to have the permission: **\"" + Arrays.toString(permissions) + "\"**  to execute this command!"
+						, command.getMessage());
 			}
 			return result;
-		};
+		}, RequiredData.AUTHOR, RequiredData.AUTHOR_PERMISSIONS);
 	}
 
 	/**
@@ -73,20 +107,21 @@ public interface CommandRequirement {
 	 * @return returns a method(1 method interface) which where it checks if said permissions are met
 	 */
 	static CommandRequirement hasPermission(final Permission permission){
-		return message -> {
+		return requiring(command -> {
 							//because its required that this message was sent in a guild
 							//i can assume there will be no error getting the author as a member
-							Member author = message.getAuthorAsMember().block();
+							//the author and its permissions are already fetched, so this doesn't wait
+							Member author = command.getAuthor().block();
 							//checking if the author of the message has the permission to manage the guild
 							//this is the requirement to change the prefix
-							boolean result = author.getBasePermissions().block().contains(permission);
+							boolean result = command.getAuthorPermissions().block().contains(permission);
 							if(!result){
 								CommandRequirement.errorMessage("Sorry " + BotUtility.getNameInGuild(author) +
 												", you have to have the permission: **\"" + permission + "\"** to execute this command!"
-										, message);
+										, command.getMessage());
 							}
 							return result;
-						};
+						}, RequiredData.AUTHOR, RequiredData.AUTHOR_PERMISSIONS);
 	}
 
 	/**
@@ -96,21 +131,19 @@ public interface CommandRequirement {
 	 * @return returns a method(1 method interface) which where it checks if said permissions are met
 	 */
 	static CommandRequirement botHasPermission(final Permission permission){
-		return message -> {
+		return requiring(command -> {
 			//because its required that this message was sent in a guild
-			//i can assume there will be no error getting the author as a member
-			Guild guild = message.getGuild().block();
-			Member botMember = guild.getMemberById(SorakaBot.getSelf().getId()).block();
-			//checking if the author of the message has the permission to manage the guild
-			//this is the requirement to change the prefix
-			boolean result = botMember.getBasePermissions().block().contains(permission);
+			//i can assume there will be no error getting the bot as a member
+			//the bot and its permissions are already fetched, so this doesn't wait
+			Member botMember = command.getBot().block();
+			boolean result = command.getBotPermissions().block().contains(permission);
 			if(!result){
 				CommandRequirement.errorMessage("Sorry " + BotUtility.getNameInGuild(botMember) +
 								" has to have the permission: **\"" + permission + "\"**  to execute this command!"
-						, message);
+						, command.getMessage());
 			}
 			return result;
-		};
+		}, RequiredData.BOT, RequiredData.BOT_PERMISSIONS);
 	}
 
 	/**
@@ -119,17 +152,12 @@ public interface CommandRequirement {
 	 * @return returns if it has the right amount
 	 */
 	static CommandRequirement correctSyntaxSegmentAmount (int segments){
-		return message -> {
-
-			String content = message.getContent();
-			//splitting the command by its spaces
-			//the first one is the command itself, the second should be the prefix
-			String[] contentSegments = content.split(" ");
+		return command -> {
+			//the content was already split up by its spaces when the command was parsed
 			//before assigning the new prefix, check if there are the right amount of segments (if so the syntax isn't uphold)
-			boolean result = contentSegments.length == segments;
+			boolean result = command.getSegmentAmount() == segments;
 			if(!result){
-				MessageChannel channel = message.getChannel().block();
-				channel.createMessage("SyntaxError, too many or missing arguments, use the **help** command for information").block();
+				CommandRequirement.errorMessage("SyntaxError, too many or missing arguments, use the **help** command for information", command.getMessage());
 			}
 			return result;
 		};
@@ -140,17 +168,12 @@ public interface CommandRequirement {
 	 * @return returns if it has the right amount
 	 */
 	static CommandRequirement correctSyntaxSegmentAmount (int... possibleSegments){
-		return message -> {
-
-			String content = message.getContent();
-			//splitting the command by its spaces
-			//the first one is the command itself, the second should be the prefix
-			String[] contentSegments = content.split(" ");
+		return command -> {
+			//the content was already split up by its spaces when the command was parsed
 			//before assigning the new prefix, check if there is the right amount of segments (if so the syntax isn't uphold)
-			boolean result = Arrays.stream(possibleSegments).anyMatch(segment -> segment == contentSegments.length);
+			boolean result = Arrays.stream(possibleSegments).anyMatch(segment -> segment == command.getSegmentAmount());
 			if(!result){
-				MessageChannel channel = message.getChannel().block();
-				channel.createMessage("SyntaxError, too many or missing arguments, use the **help** command for information").block();
+				CommandRequirement.errorMessage("SyntaxError, too many or missing arguments, use the **help** command for information", command.getMessage());
 			}
 			return result;
 		};
@@ -1,7 +1,5 @@
 package discord.bot.features.commands.parts;
 
-import discord4j.core.object.entity.Message;
-
 public interface Executable {
-	void execute(Message message);
+	void execute(ParsedCommand command);
 }
@@ -0,0 +1,171 @@
+package discord.bot.features.commands.parts;
+
+import discord.bot.SorakaBot;
+import discord4j.common.util.Snowflake;
+import discord4j.core.object.entity.Guild;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.User;
+import discord4j.core.object.entity.channel.MessageChannel;
+import discord4j.rest.util.PermissionSet;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * this class models a message which was interpreted as a command
+ * the content is split up only once, when the message arrives
+ * and then this object is passed to every requirement and to the executable of the command
+ * so they don't have to split the content again
+ */
+public class ParsedCommand {
+
+	//the message the command was written in
+	private final Message message;
+
+	//the prefix which was used to call the command
+	private final String prefix;
+	//the name of the command without the prefix
+	private final String name;
+	//the content split up by its spaces, the first segment is the command itself (with the prefix)
+	private final String[] segments;
+
+	//the ids of where and by whom the command was sent
+	//the guildId is null if the message was sent via DM
+	private final Snowflake guildId;
+	private final Snowflake channelId;
+	private final Snowflake authorId;
+
+	//the data which is fetched from discord, it gets fetched at most once (when its first needed)
+	//and after that every requirement and the executable get the cached version
+	private final Mono<Guild> guild;
+	private final Mono<MessageChannel> channel;
+	private final Mono<Member> author;
+	private final Mono<PermissionSet> authorPermissions;
+	private final Mono<Member> bot;
+	private final Mono<PermissionSet> botPermissions;
+
+	public ParsedCommand(Message message, String prefix, String name){
+		this.message = message;
+		this.prefix = prefix;
+		this.name = name;
+		this.segments = message.getContent().split(" ");
+		this.guildId = message.getGuildId().orElse(null);
+		this.channelId = message.getChannelId();
+		this.authorId = message.getAuthor().map(User::getId).orElse(null);
+
+		this.guild = message.getGuild().cache();
+		this.channel = message.getChannel().cache();
+		this.author = message.getAuthorAsMember().cache();
+		this.authorPermissions = author.flatMap(Member::getBasePermissions).cache();
+		//the bot member doesn't need the guild to be fetched first, only its id
+		this.bot = Mono.justOrEmpty(guildId)
+				.flatMap(id -> message.getClient().getMemberById(id, SorakaBot.getSelf().getId()))
+				.cache();
+		this.botPermissions = bot.flatMap(Member::getBasePermissions).cache();
+	}
+
+	/**
+	 * fetches all the needed data in parallel, after that the data is cached
+	 * so the requirements can be checked without waiting for discord again
+	 * @param requiredData the data which should be fetched
+	 * @return a Mono which completes when everything is fetched
+	 */
+	public Mono<Void> prefetch(Set<RequiredData> requiredData){
+		List<Mono<?>> fetches = new ArrayList<>();
+		for(RequiredData data : requiredData){
+			switch (data){
+				case GUILD: fetches.add(guild); break;
+				case CHANNEL: fetches.add(channel); break;
+				case AUTHOR: fetches.add(author); break;
+				case AUTHOR_PERMISSIONS: fetches.add(authorPermissions); break;
+				case BOT: fetches.add(bot); break;
+				case BOT_PERMISSIONS: fetches.add(botPermissions); break;
+			}
+		}
+		return Mono.when(fetches);
+	}
+
+	/**
+	 * gets a segment of the command, the segment 0 is the command itself, the segment 1 is the first argument
+	 * @param i the index of the segment
+	 * @return the segment
+	 */
+	public String getSegment(int i){
+		return segments[i];
+	}
+
+	/**
+	 * the amount of segments the command has (the command itself included)
+	 * so "!prefix $newPrefix" has 2 segments
+	 * @return the amount of segments
+	 */
+	public int getSegmentAmount(){
+		return segments.length;
+	}
+
+	/**
+	 * checks if the command was sent in a guild, this doesn't need to fetch the channel
+	 * @return if this wasn't a dm
+	 */
+	public boolean inGuild(){
+		return guildId != null;
+	}
+
+	//getter & setter
+
+	public Message getMessage(){
+		return message;
+	}
+
+	public String getPrefix(){
+		return prefix;
+	}
+
+	public String getName(){
+		return name;
+	}
+
+	public String[] getSegments(){
+		return segments;
+	}
+
+	public Optional<Snowflake> getGuildId(){
+		return Optional.ofNullable(guildId);
+	}
+
+	public Snowflake getChannelId(){
+		return channelId;
+	}
+
+	public Optional<Snowflake> getAuthorId(){
+		return Optional.ofNullable(authorId);
+	}
+
+	public Mono<Guild> getGuild(){
+		return guild;
+	}
+
+	public Mono<MessageChannel> getChannel(){
+		return channel;
+	}
+
+	public Mono<Member> getAuthor(){
+		return author;
+	}
+
+	public Mono<PermissionSet> getAuthorPermissions(){
+		return authorPermissions;
+	}
+
+	public Mono<Member> getBot(){
+		return bot;
+	}
+
+	public Mono<PermissionSet> getBotPermissions(){
+		return botPermissions;
+	}
+}
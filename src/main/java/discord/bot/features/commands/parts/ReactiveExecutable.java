@@ -0,0 +1,30 @@
+package discord.bot.features.commands.parts;
+
+import discord.bot.features.commands.CommandExecutor;
+import reactor.core.publisher.Mono;
+
+/**
+ * the non-blocking version of an Executable
+ * instead of blocking on every call to discord it returns a Mono, which completes when the command is done
+ * so the thread which handles the events doesn't have to wait for the command
+ */
+public interface ReactiveExecutable {
+
+	/**
+	 * executes the command
+	 * @param command the parsed command
+	 * @return a Mono which completes when the command is done
+	 */
+	Mono<Void> execute(ParsedCommand command);
+
+	/**
+	 * makes a ReactiveExecutable out of a normal (blocking) Executable
+	 * the executable then runs on a thread of the command pool, where it is allowed to block
+	 * @param executable the blocking executable
+	 * @return returns the non-blocking version of it
+	 */
+	static ReactiveExecutable of(Executable executable){
+		return command -> Mono.<Void>fromRunnable(() -> executable.execute(command))
+				.subscribeOn(CommandExecutor.scheduler());
+	}
+}
@@ -0,0 +1,51 @@
+package discord.bot.features.commands.parts;
+
+import discord.bot.features.commands.CommandExecutor;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * the non-blocking version of a CommandRequirement
+ * instead of blocking until the requirement is checked it returns a Mono of the result
+ */
+public interface ReactiveRequirement {
+
+	/**
+	 * checks if the requirement is met
+	 * @param command the parsed command with the needed information to check if everything is right
+	 * @return a Mono which emits if the requirement is met
+	 */
+	Mono<Boolean> check(ParsedCommand command);
+
+	/**
+	 * the data this requirement needs from discord, it gets fetched before the requirement is checked
+	 * @return the needed data, by default nothing
+	 */
+	default Set<RequiredData> requiredData(){
+		return EnumSet.noneOf(RequiredData.class);
+	}
+
+	/**
+	 * makes a ReactiveRequirement out of a normal (blocking) CommandRequirement
+	 * the requirement then gets checked on a thread of the command pool, where it is allowed to block
+	 * the data the requirement needs stays the same
+	 * @param requirement the blocking requirement
+	 * @return returns the non-blocking version of it
+	 */
+	static ReactiveRequirement of(CommandRequirement requirement){
+		return new ReactiveRequirement() {
+			@Override
+			public Mono<Boolean> check(ParsedCommand command) {
+				return Mono.fromCallable(() -> requirement.check(command))
+						.subscribeOn(CommandExecutor.scheduler());
+			}
+
+			@Override
+			public Set<RequiredData> requiredData() {
+				return requirement.requiredData();
+			}
+		};
+	}
+}
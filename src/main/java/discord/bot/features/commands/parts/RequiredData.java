@@ -0,0 +1,20 @@
+package discord.bot.features.commands.parts;
+
+/**
+ * the data a requirement needs from discord to be checked
+ * a command collects these of all of its requirements, and fetches them once and in parallel before checking them
+ */
+public enum RequiredData {
+	//the guild the command was sent in
+	GUILD,
+	//the channel the command was sent in
+	CHANNEL,
+	//the author of the command as a member of the guild
+	AUTHOR,
+	//the base permissions of the author in the guild
+	AUTHOR_PERMISSIONS,
+	//the bot as a member of the guild
+	BOT,
+	//the base permissions of the bot in the guild
+	BOT_PERMISSIONS
+}
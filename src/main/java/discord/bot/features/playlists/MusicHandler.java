@@ -66,9 +66,9 @@ public class MusicHandler {
 		CommandRequirement inGuild = CommandRequirement.IN_GUILD;
 		List<CommandRequirement> requirements = List.of(syntax, inGuild);
 
-		Executable executable = msg -> {
+		Executable executable = command -> {
 			//first the author as a member, bc this message has to be sent in a guild
-			Member author  = msg.getAuthorAsMember().block();
+			Member author  = command.getMessage().getAuthorAsMember().block();
 			//checking if the member is in a voiceChannel of the guild
 			VoiceState voiceState = author.getVoiceState().block();
 			if(voiceState != null){
@@ -94,10 +94,9 @@ public class MusicHandler {
 		CommandRequirement inGuild = CommandRequirement.IN_GUILD;
 		List<CommandRequirement> requirements = List.of(syntax, inGuild);
 
-		Executable executable = msg -> {
-			String content = msg.getContent();
-			String[] segments = content.split(" "); //this array has length 2 (checked by requirement)
-			playerManager.loadItem(segments[1], scheduler);
+		Executable executable = command -> {
+			//the command has 2 segments (checked by requirement)
+			playerManager.loadItem(command.getSegment(1), scheduler);
 		};
 
 		Command command = new Command(requirements, executable, description);
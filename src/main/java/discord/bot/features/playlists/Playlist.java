@@ -33,6 +33,18 @@ public class Playlist implements Serializable {
 		this(name, new ArrayList<>(), guild);
 	}
 
+	/**
+	 * used to load a saved playlist
+	 * @param name the name of the playlist
+	 * @param songs the songs of the playlist
+	 * @param guildId the id of the guild of the playlist
+	 */
+	public Playlist(String name, List<String> songs, String guildId){
+		this.name = name;
+		this.songs = songs;
+		this.guildId = guildId;
+	}
+
 	/**
 	 * adds a song to the playlist
 	 * @param url the url which leads to a playable song
@@ -76,5 +88,9 @@ public class Playlist implements Serializable {
 		return guildId;
 	}
 
+	public List<String> getSongs(){
+		return songs;
+	}
+
 
 }
@@ -22,6 +22,7 @@ import discord4j.rest.util.Permission;
 import discord4j.rest.util.PermissionSet;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 public class PlaylistHandler {
@@ -47,7 +48,8 @@ public class PlaylistHandler {
 		this.logger = logger;
 		this.client = client;
 		//loading the saved vars
-		playlists = MemManager.loadPlaylists();
+		//the commands run in parallel, so the list has to be safe to read while a playlist is added
+		playlists = new CopyOnWriteArrayList<>(MemManager.loadPlaylists());
 		musicChannels = MemManager.loadMusicChannels(client);
 
 		//initializing all the commands
@@ -75,33 +77,34 @@ public class PlaylistHandler {
 
 		Description description = new Description("creates a new Playlist");
 
-		Executable executable = message -> {
+		Executable executable = command -> {
 			//it requires the command to be in a guild
-			GuildMessageChannel channel = (GuildMessageChannel) message.getChannel().block();
+			GuildMessageChannel channel = (GuildMessageChannel) command.getMessage().getChannel().block();
 			Guild guild = channel.getGuild().block();
-			//getting the content of the message and splitting it up to get the second argument (which is the name of the playlist)
-			String content = message.getContent();
-			String[] segments = content.split(" ");
-			String playlistName = segments[1];
-
-			//check if the name is already taken
-			//first get the names of all the playlist, and then check if this name is in it
-			List<String> takenNames = playlists.stream()
-												.map(playlist -> playlist.getName())
-												.collect(Collectors.toList());
-			if(takenNames.contains(playlistName)){
-				//then tell the user
-				channel.createMessage("The name is already taken").block();
-				return;
+			//the second argument is the name of the playlist
+			String playlistName = command.getSegment(1);
+
+			//the check and the add happen together, so two commands can't create a playlist with the same name
+			synchronized(playlists){
+				//check if the name is already taken
+				//first get the names of all the playlist, and then check if this name is in it
+				List<String> takenNames = playlists.stream()
+													.map(playlist -> playlist.getName())
+													.collect(Collectors.toList());
+				if(takenNames.contains(playlistName)){
+					//then tell the user
+					channel.createMessage("The name is already taken").block();
+					return;
+				}
+
+				//now create the new Playlist and add it to the list of playlists
+				playlists.add(new Playlist(playlistName, guild));
+				//also save the playlists of the guild
+				MemManager.savePlaylists(guild.getId(), playlists);
 			}
 
 			//give feedback to the user
 			channel.createMessage("**Successfully** created the Playlist: ** " + playlistName + "**!").block();
-
-			//now create the new Playlist and add it to the list of playlists
-			playlists.add(new Playlist(playlistName, guild));
-			//also save the playlists
-			MemManager.savePlaylists(playlists);
 		};
 
 		commands.put(name, new Command(requirements, executable, description));
@@ -120,9 +123,9 @@ public class PlaylistHandler {
 
 		Description description = new Description("shows all available playlists");
 
-		Executable executable = message -> {
+		Executable executable = command -> {
 			//it requires the command to be in a guild
-			GuildMessageChannel channel = (GuildMessageChannel) message.getChannel().block();
+			GuildMessageChannel channel = (GuildMessageChannel) command.getMessage().getChannel().block();
 			Guild guild = channel.getGuild().block();
 
 			//create the message to display all playlist
@@ -158,7 +161,7 @@ public class PlaylistHandler {
 
 		Description description = new Description("adds a new song to a playlist. Syntax: **!addSong $playlist $yt-url**");
  
-		Executable executable = message -> {
+		Executable executable = command -> {
 
 		};
 
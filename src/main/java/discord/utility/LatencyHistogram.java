@@ -0,0 +1,100 @@
+package discord.utility;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a histogram for latencies, which doesn't allocate anything when a value is recorded
+ * the values are stored in microseconds in buckets which get wider the bigger the values are
+ * (every power of 2 is split into 16 buckets, so a percentile is off by at most ~6%)
+ * recording is just an index calculation and an atomic increment, so it can be used on every command
+ */
+public class LatencyHistogram {
+
+	//every power of 2 is split into 2^SUB_BUCKET_BITS buckets
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	//the biggest value which is tracked exactly enough, bigger values go into the last bucket (~9 hours)
+	private static final int MAX_EXPONENT = 45;
+	private static final int BUCKET_AMOUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_AMOUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * records a latency
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void recordNanos(long nanos){
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+		counts.incrementAndGet(indexOf(micros));
+		count.incrementAndGet();
+		sum.addAndGet(micros);
+		max.accumulateAndGet(micros, Math::max);
+	}
+
+	/**
+	 * the percentile of all recorded values
+	 * @param percentile the percentile between 0 and 100 (e.g.: 99 for p99)
+	 * @return the value in microseconds (the upper bound of the bucket), 0 if nothing was recorded
+	 */
+	public long percentileMicros(double percentile){
+		long total = count.get();
+		if(total == 0)
+			return 0;
+		//the rank of the value, which has to be reached
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+		long seen = 0;
+		for(int i = 0; i < BUCKET_AMOUNT; i++){
+			seen += counts.get(i);
+			if(seen >= rank)
+				return Math.min(upperBoundOf(i), max.get());
+		}
+		return max.get();
+	}
+
+	public long getCount(){
+		return count.get();
+	}
+
+	public long getMaxMicros(){
+		return max.get();
+	}
+
+	public long getMeanMicros(){
+		long total = count.get();
+		return total == 0 ? 0 : sum.get() / total;
+	}
+
+	//----------------------------------------helper----------------------------------------
+
+	/**
+	 * the bucket of a value
+	 * values below 16 have their own bucket, after that every power of 2 has 16 buckets
+	 */
+	private static int indexOf(long micros){
+		if(micros < SUB_BUCKETS)
+			return (int) micros;
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if(exponent > MAX_EXPONENT)
+			return BUCKET_AMOUNT - 1;
+		int shift = exponent - SUB_BUCKET_BITS;
+		//the top 5 bits of the value, between 16 and 31
+		int subBucket = (int) (micros >>> shift);
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (subBucket - SUB_BUCKETS);
+	}
+
+	/**
+	 * the biggest value which goes into a bucket
+	 */
+	private static long upperBoundOf(int index){
+		if(index < SUB_BUCKETS)
+			return index;
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((long) (subBucket + 1) << shift) - 1;
+	}
+}
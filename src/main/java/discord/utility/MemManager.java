@@ -4,24 +4,48 @@ import discord.bot.features.playlists.Playlist;
 import discord4j.common.util.Snowflake;
 import discord4j.core.GatewayDiscordClient;
 import discord4j.core.object.entity.Guild;
-import discord4j.core.object.entity.Member;
 import discord4j.core.object.entity.Role;
 import discord4j.core.object.entity.channel.GuildMessageChannel;
 import discord4j.rest.http.client.ClientException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * this class loads and saves the state of the bot (joinChannels, emojiRoles, prefixes, playlists...)
+ * every guild has its own folder in the data folder (data/<guild id>/), with a file for every store
+ * so a change of a guild only writes the files of this guild, and the guilds can be loaded in parallel
+ * every file is a StateFile (a binary format with a header and checksum, see StateFile)
+ * the stores which change with every reaction (emojiReactors, emojiRoles) have a journal as well (see StateJournal)
+ * a change only gets appended to the journal of the guild, and the store of the guild is only written after a lot of changes, or at the start
+ * the other stores are written in the background by a PersistenceService, so the callers never wait for the disk
+ * the old files (one for all guilds) get migrated once with migrateLegacyFiles()
+ */
 public class MemManager {
 
-	private static final String RES_FOLDER = "src/main/resources/";
+	//the folder of the data, it can be set with the environment variable DATA_DIR
+	private static final File DATA_FOLDER = new File(Optional.ofNullable(System.getenv("DATA_DIR")).orElse("data"));
+	//where the files for all guilds were stored before
+	private static final String LEGACY_FOLDER = "src/main/resources/";
 
 	//filenames
 	//join feature
 	private static final String JOIN_CHANNEL_NAMES = "join.channels";
 	private static final String EMOJI_ROLE_NAMES = "emoji.roles";
 	private static final String EMOJI_REACTOR_NAMES = "emoji.reactors";
+	private static final String EMOJI_REACTOR_COUNTS = "emoji.reactor.counts";
+	private static final String JOIN_MESSAGE_NAMES = "join.messages";
 	//for commands itself
 	private static final String PREFIXES = "pre.fixes";
 
@@ -29,6 +53,42 @@ public class MemManager {
 	private static final String PLAYLISTS = "play.lists";
 	private static final String MUSIC_CHANNELS = "music.channels";
 
+	//the files in the binary format have this ending
+	private static final String STATE_SUFFIX = ".bin";
+	//the old files (ObjectOutputStream) are renamed to this after they were migrated
+	private static final String LEGACY_SUFFIX = ".legacy";
+	//the old files in the binary format (and their journals) are renamed to this after they were migrated
+	private static final String MIGRATED_SUFFIX = ".migrated";
+	//the only classes the old files contain, everything else is rejected before it gets created
+	//arrays are checked by their element type: HashMap and ArrayList check the size of their (Map.Entry[] and Object[])
+	//table while reading, and arrays of primitives (the long[] of the reactor counts) aren't checked at all
+	private static final ObjectInputFilter LEGACY_FILTER = ObjectInputFilter.Config.createFilter(
+			"java.util.HashMap;java.util.ArrayList;java.util.LinkedList;java.lang.String;"
+			+ "java.util.Map$Entry;java.lang.Object;discord.bot.features.playlists.Playlist;!*");
+	//the journals have this ending
+	private static final String JOURNAL_SUFFIX = ".journal";
+
+	//after this many changes in the journal of a guild, the store of the guild should be written again (and the journal emptied)
+	private static final int COMPACT_AFTER = 1_000;
+	//the journals of the guilds, by the id of the guild
+	private static final Map<Long, StateJournal> EMOJI_REACTOR_JOURNALS = new ConcurrentHashMap<>();
+	private static final Map<Long, StateJournal> EMOJI_ROLE_JOURNALS = new ConcurrentHashMap<>();
+
+	//writes the stores without a journal in the background
+	private static final PersistenceService PERSISTENCE = PersistenceService.fromEnvironment();
+
+	//how many guilds (and roles or channels of a guild) are resolved with discord at the same time while loading
+	private static final int LOAD_CONCURRENCY = 16;
+	//how long the last load of every store took in milliseconds, by the name of the store
+	private static final Map<String, Long> LOAD_TIMES = new ConcurrentSkipListMap<>();
+
+	//the kinds of records in the journals
+	private static final int REACTOR_ADDED = 1;
+	private static final int REACTOR_REMOVED = 2;
+	private static final int REACTORS_CLEARED = 3;
+	private static final int EMOJI_ROLE_SET = 1;
+	private static final int EMOJI_ROLE_REMOVED = 2;
+
 	//--------------------------------------------------load-methods--------------------------------------------------
 
 	/**
@@ -36,24 +96,27 @@ public class MemManager {
 	 * @return returns this list
 	 */
 	public static List<GuildMessageChannel> loadJoinChannels(GatewayDiscordClient client){
-		try{
-			String filePath = RES_FOLDER + JOIN_CHANNEL_NAMES;
-			FileInputStream fis = new FileInputStream(filePath);
-			ObjectInputStream ois = new ObjectInputStream(fis);
+		return timed(JOIN_CHANNEL_NAMES, () -> {
 			//reading the map of guild-id and channel-id
-			@SuppressWarnings("unchecked")
-			Map<String, String> guildChannelMap = (Map<String, String>) ois.readObject();
-			if(guildChannelMap == null){
-				guildChannelMap = new HashMap<>();
-			}
-			ois.close();
+			Map<Long, Long> guildChannelMap = readGuildStates(JOIN_CHANNEL_NAMES, MemManager::decodeId);
 			//now deserialize it, so make it the list of joinChannels
-			List<GuildMessageChannel> joinChannels = deserializeJoinChannels(guildChannelMap, client);
-			return joinChannels;
-		}
-		catch(IOException | ClassNotFoundException e){
-			return null;
-		}
+			return deserializeJoinChannels(guildChannelMap, client);
+		});
+	}
+
+	/**
+	 * this method loads the ids of the joinMessages of every guild
+	 * the messages don't get fetched, they are only fetched when they are needed
+	 * @return the ids of the joinMessages by the ids of their guilds
+	 */
+	public static Map<Snowflake, Snowflake> loadJoinMessages(){
+		return timed(JOIN_MESSAGE_NAMES, () -> {
+			//reading the map of guild-id and message-id
+			Map<Long, Long> guildMessageMap = readGuildStates(JOIN_MESSAGE_NAMES, MemManager::decodeId);
+			final Map<Snowflake, Snowflake> joinMessages = new HashMap<>();
+			guildMessageMap.forEach((guildId, messageId) -> joinMessages.put(Snowflake.of(guildId), Snowflake.of(messageId)));
+			return joinMessages;
+		});
 	}
 
 	/**
@@ -62,101 +125,89 @@ public class MemManager {
 	 * @return the emojiRoles as a map
 	 */
 	public static Map<Guild, Map<String, Role>> loadEmojiRoles(GatewayDiscordClient client){
-		try{
-			String filePath = RES_FOLDER + EMOJI_ROLE_NAMES;
-			FileInputStream fis = new FileInputStream(filePath);
-			ObjectInputStream ois = new ObjectInputStream(fis);
-			//reading the map of guild-id and channel-id
-			@SuppressWarnings("unchecked")
-			Map<String, Map<String, String>> emojiRoleIds = (Map<String, Map<String, String>>) ois.readObject();
-			if(emojiRoleIds == null){
-				emojiRoleIds = new HashMap<>();
-			}
-			ois.close();
-			//now deserialize it, so make it the list of joinChannels
+		return timed(EMOJI_ROLE_NAMES, () -> {
+			//the guilds which had changes in their journal, they are saved again so the journal is empty
+			Set<Long> journaled = ConcurrentHashMap.newKeySet();
+			//reading the map of guild-id and (emoji, role-id), with the changes since the last time they were saved
+			Map<Long, Map<String, Long>> emojiRoleIds = new ConcurrentHashMap<>();
+			guildIds().parallelStream().forEach(guildId -> {
+				Map<String, Long> guildEmojiRoles = readGuildState(guildId, EMOJI_ROLE_NAMES, MemManager::decodeGuildEmojiRoles, new HashMap<>());
+				if(emojiRoleJournal(guildId).replay(in -> replayEmojiRole(guildEmojiRoles, in)) > 0)
+					journaled.add(guildId);
+				if(!guildEmojiRoles.isEmpty() || journaled.contains(guildId))
+					emojiRoleIds.put(guildId, guildEmojiRoles);
+			});
+			//now deserialize it, so make it the map of emojiRoles
 			Map<Guild, Map<String, Role>> emojiRoles = deserializeEmojiRoles(emojiRoleIds, client);
-			//actually save the list again because it could be that some things were removed
-			MemManager.saveEmojiRoles(emojiRoles);
+			//actually save a guild again if some things were removed, or if it had changes in the journal
+			emojiRoles.forEach((guild, guildEmojiRoles) -> {
+				long guildId = guild.getId().asLong();
+				if(journaled.contains(guildId) || guildEmojiRoles.size() != emojiRoleIds.get(guildId).size())
+					saveEmojiRoles(guild.getId(), guildEmojiRoles);
+			});
 			return emojiRoles;
-		}
-		catch(IOException | ClassNotFoundException e){
-			return new HashMap<>();
-		}
+		});
 	}
 
 	/**
-	 * loads the saved emojiRoles
-	 * @param client the client of the bot
-	 * @return the emojiRoles as a map
+	 * loads the saved emojiReactors
+	 * the members don't get fetched, the reactors are only stored by their ids
+	 * @return the ids of the reactors, by the raw emoji, by the id of the guild
 	 */
-	public static Map<Guild, Map<String, List<Member>>> loadEmojiReactors(GatewayDiscordClient client){
-		try{
-			String filePath = RES_FOLDER + EMOJI_REACTOR_NAMES;
-			FileInputStream fis = new FileInputStream(filePath);
-			ObjectInputStream ois = new ObjectInputStream(fis);
-			//reading the map of guild-id and channel-id
-			@SuppressWarnings("unchecked")
-			Map<String, Map<String, List<String>>> emojiReactorIds = (Map<String, Map<String, List<String>>>) ois.readObject();
-			if(emojiReactorIds == null){
-				emojiReactorIds = new HashMap<>();
-			}
-			ois.close();
-			Map<Guild, Map<String, List<Member>>> emojiReactors = deserializeEmojiReactors(emojiReactorIds, client);
-			//actually save the list again because it could be that some things were removed
-			MemManager.saveEmojiReactors(emojiReactors);
-			//now deserialize it, so make it the list of joinChannels
+	public static Map<Long, Map<String, ReactorSet>> loadEmojiReactors(){
+		return timed(EMOJI_REACTOR_NAMES, () -> {
+			Map<Long, Map<String, ReactorSet>> emojiReactors = new ConcurrentHashMap<>();
+			guildIds().parallelStream().forEach(guildId -> {
+				Map<String, ReactorSet> guildEmojiReactors = readGuildState(guildId, EMOJI_REACTOR_NAMES, MemManager::decodeGuildEmojiReactors, new HashMap<>());
+				//the changes since the last time the reactors were saved
+				int changes = emojiReactorJournal(guildId).replay(in -> replayEmojiReactor(guildEmojiReactors, in));
+				//save them with the changes, so the counts match the reactors again and the journal is empty
+				if(changes > 0)
+					saveEmojiReactors(Snowflake.of(guildId), guildEmojiReactors);
+				if(!guildEmojiReactors.isEmpty())
+					emojiReactors.put(guildId, guildEmojiReactors);
+			});
 			return emojiReactors;
-		}
-		catch(IOException | ClassNotFoundException e){
-			return new HashMap<>();
-		}
+		});
+	}
+
+	/**
+	 * loads the count and the fingerprint of the saved reactors of every emoji
+	 * these are saved with the reactors, so it can be checked if the reactions changed without fetching the reactors
+	 * @return the {count, fingerprint} of the reactors, by the raw emoji, by the id of the guild
+	 */
+	public static Map<Long, Map<String, long[]>> loadEmojiReactorCounts(){
+		return timed(EMOJI_REACTOR_COUNTS, () -> readGuildStates(EMOJI_REACTOR_COUNTS, MemManager::decodeGuildEmojiReactorCounts));
 	}
 
 	/**
 	 * this loads the prefixes for each guild
-	 * @param client the client
-	 * @return returns the map of prefixes
-	 */
-	public static Map<Guild, String> loadPrefixes(GatewayDiscordClient client){
-		try{
-			String filePath = RES_FOLDER + PREFIXES;
-			FileInputStream fis = new FileInputStream(filePath);
-			ObjectInputStream ois = new ObjectInputStream(fis);
-			//reading the map of guild-id
-			@SuppressWarnings("unchecked")
-			Map<String, String> prefixGuildIds = (Map<String, String>) ois.readObject();
-			if(prefixGuildIds == null){
-				prefixGuildIds = new HashMap<>();
-			}
-			ois.close();
-			//now deserialize it, so make it the list of joinChannels
-			return deserializePrefixes(prefixGuildIds, client);
-		}
-		catch(IOException | ClassNotFoundException e){
-			return new HashMap<>();
-		}
+	 * the guilds don't have to be fetched for this, the prefixes are stored by the id of the guild
+	 * @return returns the map of prefixes (guild id, prefix)
+	 */
+	public static SnowflakeMap<String> loadPrefixes(){
+		return timed(PREFIXES, () -> {
+			SnowflakeMap<String> prefixes = new SnowflakeMap<>();
+			//all at once, a single put copies the whole table
+			prefixes.putAll(readGuildStates(PREFIXES, MemManager::decodePrefix));
+			return prefixes;
+		});
 	}
 
 	/**
 	 * loads the list of playlists
-	 * @return
+	 * @return the playlists
 	 */
 	public static List<Playlist> loadPlaylists(){
-		try{
-			String filePath = RES_FOLDER + PLAYLISTS;
-			FileInputStream fis = new FileInputStream(filePath);
-			ObjectInputStream ois = new ObjectInputStream(fis);
-			//reading the map of guild-id
-			@SuppressWarnings("unchecked")
-			List<Playlist> playlists = (List<Playlist>) ois.readObject();
-
-			ois.close();
-			//now deserialize it, so make it the list of joinChannels
+		return timed(PLAYLISTS, () -> {
+			List<Playlist> playlists = new ArrayList<>();
+			guildIds().parallelStream()
+					.map(guildId -> readGuildState(guildId, PLAYLISTS,
+							(in, version) -> decodeGuildPlaylists(in, Long.toUnsignedString(guildId)), Collections.<Playlist>emptyList()))
+					.collect(Collectors.toList())
+					.forEach(playlists::addAll);
 			return playlists;
-		}
-		catch(IOException | ClassNotFoundException e){
-			return new ArrayList<>();
-		}
+		});
 	}
 
 	/**
@@ -164,22 +215,34 @@ public class MemManager {
 	 * @return the map of Guilds linked to the GuildMessageChannel
 	 */
 	public static Map<Guild, GuildMessageChannel> loadMusicChannels(GatewayDiscordClient client){
-		try{
-			String filePath = RES_FOLDER + MUSIC_CHANNELS;
-			FileInputStream fis = new FileInputStream(filePath);
-			ObjectInputStream ois = new ObjectInputStream(fis);
-			//reading the map of guild-id
-			@SuppressWarnings("unchecked")
-			Map<String, String> serializedMusicChannels = (Map<String, String>) ois.readObject();
-			Map<Guild, GuildMessageChannel> deserializedMusicChannels = deserializeMusicChannels(serializedMusicChannels, client);
-
-			ois.close();
-			//now deserialize it, so make it the list of joinChannels
-			return deserializedMusicChannels;
-		}
-		catch(IOException | ClassNotFoundException e){
-			return new HashMap<>();
-		}
+		return timed(MUSIC_CHANNELS, () -> {
+			//reading the map of guild-id and channel-id
+			Map<Long, Long> serializedMusicChannels = readGuildStates(MUSIC_CHANNELS, MemManager::decodeId);
+			return deserializeMusicChannels(serializedMusicChannels, client);
+		});
+	}
+
+	/**
+	 * loads a store and remembers how long it took
+	 * @param fileName the name of the store
+	 * @param load loads the store
+	 * @return what was loaded
+	 */
+	private static <T> T timed(String fileName, Supplier<T> load){
+		long start = System.nanoTime();
+		T loaded = load.get();
+		LOAD_TIMES.put(fileName, (System.nanoTime() - start) / 1_000_000);
+		return loaded;
+	}
+
+	/**
+	 * how long the last load of every store took, as a line of text for the stats
+	 * @return the text
+	 */
+	public static String renderLoadTimes(){
+		List<String> times = new ArrayList<>();
+		LOAD_TIMES.forEach((fileName, millis) -> times.add(fileName + " " + millis + "ms"));
+		return "load times: " + String.join(", ", times) + System.lineSeparator();
 	}
 
 	//------------------------------------------------end: load-methods------------------------------------------------
@@ -187,350 +250,733 @@ public class MemManager {
 	//--------------------------------------------------save-methods--------------------------------------------------
 
 	/**
-	 * this method saves a list of joinChannels
-	 * @param joinChannels the GuildMessageChannels which are the joinChannels
+	 * this method saves the joinChannel of a guild
+	 * @param guildId the id of the guild
+	 * @param channelId the id of the joinChannel
 	 */
-	public static void saveJoinChannels(List<GuildMessageChannel> joinChannels, GatewayDiscordClient client){
-		try {
-			//first convert the list into a map with the guild-id as key and the channel id as value,
-			//because the guild, and channel classes are not serializable
-			Map<String, String> convertedJoinChannels = serializeJoinChannels(joinChannels);
-
-			String fileName = RES_FOLDER + JOIN_CHANNEL_NAMES;
-			FileOutputStream fos = new FileOutputStream(fileName);
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-			oos.writeObject(convertedJoinChannels);
-			oos.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	public static void saveJoinChannel(Snowflake guildId, Snowflake channelId){
+		writeGuildState(guildId.asLong(), JOIN_CHANNEL_NAMES, out -> out.writeLong(channelId.asLong()));
 	}
 
 	/**
-	 * this method aves the roles associated with emojis, for every guild
-	 * by extracting the ids of the guilds, and roles
-	 * @param emojiRoles the object to be saved
+	 * this method saves the id of the joinMessage of a guild
+	 * @param guildId the id of the guild
+	 * @param messageId the id of the joinMessage
 	 */
-	public static void saveEmojiRoles(Map<Guild, Map<String, Role>> emojiRoles){
-		try {
-			//fist convert the map
-			Map<String, Map<String, String>> convertedEmojiRoles = serializeEmojiRoles(emojiRoles);
-			String fileName = RES_FOLDER + EMOJI_ROLE_NAMES;
-			FileOutputStream fos = new FileOutputStream(fileName);
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-			oos.writeObject(convertedEmojiRoles);
-			oos.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	public static void saveJoinMessage(Snowflake guildId, Snowflake messageId){
+		writeGuildState(guildId.asLong(), JOIN_MESSAGE_NAMES, out -> out.writeLong(messageId.asLong()));
 	}
 
 	/**
-	 * this method aves the roles associated with emojis, for every guild
-	 * by extracting the ids of the guilds, and roles
-	 * @param emojiRoles the object to be saved
+	 * this method removes the saved id of the joinMessage of a guild
+	 * @param guildId the id of the guild
 	 */
-	public static void saveEmojiReactors(Map<Guild, Map<String, List<Member>>> emojiRoles){
-		try {
-			//fist convert the map
-			Map<String, Map<String, List<String>>> convertedEmojiReactors = serializeEmojiReactors(emojiRoles);
-			String fileName = RES_FOLDER + EMOJI_REACTOR_NAMES;
-			FileOutputStream fos = new FileOutputStream(fileName);
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-			oos.writeObject(convertedEmojiReactors);
-			oos.close();
-		} catch (IOException e) {
-			e.printStackTrace();
+	public static void removeJoinMessage(Snowflake guildId){
+		PERSISTENCE.markDeleted(guildFile(guildId.asLong(), JOIN_MESSAGE_NAMES));
+	}
+
+	/**
+	 * this method saves the roles associated with emojis of a guild
+	 * by extracting the ids of the roles
+	 * @param guildId the id of the guild
+	 * @param guildEmojiRoles the roles by their raw emoji
+	 */
+	public static void saveEmojiRoles(Snowflake guildId, Map<String, Role> guildEmojiRoles){
+		//fist convert the map
+		Map<String, Long> convertedEmojiRoles = serializeEmojiRoles(guildEmojiRoles);
+		//written right away, because the journal is emptied after it
+		writeGuildStateNow(guildId.asLong(), EMOJI_ROLE_NAMES, out -> encodeGuildEmojiRoles(out, convertedEmojiRoles));
+		//every change is in the file now
+		emojiRoleJournal(guildId.asLong()).reset();
+	}
+
+	/**
+	 * this method saves the reactors of the joinMessage of a guild
+	 * @param guildId the id of the guild
+	 * @param guildEmojiReactors the ids of the reactors, by the raw emoji
+	 */
+	public static void saveEmojiReactors(Snowflake guildId, Map<String, ReactorSet> guildEmojiReactors){
+		long id = guildId.asLong();
+		//written right away, because the journal is emptied after it
+		writeGuildStateNow(id, EMOJI_REACTOR_NAMES, out -> encodeGuildEmojiReactors(out, guildEmojiReactors));
+		//the counts are written after the reactors, so if the reactors couldn't be written the counts don't match
+		//and the reactors get fetched again
+		Map<String, long[]> counts = serializeEmojiReactorCounts(guildEmojiReactors);
+		writeGuildStateNow(id, EMOJI_REACTOR_COUNTS, out -> encodeGuildEmojiReactorCounts(out, counts));
+		//every change is in the files now
+		emojiReactorJournal(id).reset();
+	}
+
+	/**
+	 * saves the prefix of a guild
+	 * @param guildId the id of the guild
+	 * @param prefix the prefix
+	 */
+	public static void savePrefix(long guildId, String prefix){
+		writeGuildState(guildId, PREFIXES, out -> out.writeString(prefix));
+	}
+
+	/**
+	 * saves the playlists of a guild in a file
+	 * @param guildId the id of the guild
+	 * @param playlists the list of playlists, only the ones of the guild are saved
+	 */
+	public static void savePlaylists(Snowflake guildId, List<Playlist> playlists){
+		List<Playlist> guildPlaylists = playlists.stream()
+				.filter(playlist -> guildId.asString().equals(playlist.getGuildId()))
+				.collect(Collectors.toList());
+		writeGuildState(guildId.asLong(), PLAYLISTS, out -> encodeGuildPlaylists(out, guildPlaylists));
+	}
+
+	/**
+	 * this saves the musicChannel of a guild
+	 * @param guildId the id of the guild
+	 * @param channelId the id of the musicChannel
+	 */
+	public static void saveMusicChannel(Snowflake guildId, Snowflake channelId){
+		writeGuildState(guildId.asLong(), MUSIC_CHANNELS, out -> out.writeLong(channelId.asLong()));
+	}
+
+	//--------------------------------------------------end: save-methods--------------------------------------------------
+
+	//--------------------------------------------------file-methods--------------------------------------------------
+
+	/**
+	 * @return the ids of every guild which has a folder in the data folder
+	 */
+	private static List<Long> guildIds(){
+		File[] folders = DATA_FOLDER.listFiles(File::isDirectory);
+		if(folders == null)
+			return Collections.emptyList();
+		List<Long> guildIds = new ArrayList<>(folders.length);
+		for(File folder : folders){
+			try {
+				guildIds.add(Long.parseUnsignedLong(folder.getName()));
+			}
+			catch(NumberFormatException ignored){
+				//not the folder of a guild
+			}
 		}
+		return guildIds;
+	}
+
+	/**
+	 * reads a store of every guild, the guilds are read in parallel
+	 * @param fileName the name of the store
+	 * @param decoder reads the data of the store of a guild
+	 * @return the data of the store, by the id of the guild (guilds without the store aren't in it)
+	 */
+	private static <T> Map<Long, T> readGuildStates(String fileName, StateFile.Decoder<T> decoder){
+		Map<Long, T> states = new ConcurrentHashMap<>();
+		guildIds().parallelStream().forEach(guildId -> {
+			T state = readGuildState(guildId, fileName, decoder, null);
+			if(state != null)
+				states.put(guildId, state);
+		});
+		return states;
 	}
 
 	/**
-	 * saves the map of prefix for each guild
-	 * @param prefixes the map of the prefix for each guild
+	 * reads a store of a guild
+	 * @param guildId the id of the guild
+	 * @param fileName the name of the store
+	 * @param decoder reads the data of the store
+	 * @param missing what is returned if there is no file, or it can't be read
+	 * @return the data of the store
 	 */
-	public static void savePrefixes(Map<Guild, String> prefixes, GatewayDiscordClient client){
+	private static <T> T readGuildState(long guildId, String fileName, StateFile.Decoder<T> decoder, T missing){
+		File file = guildFile(guildId, fileName);
+		if(!file.exists())
+			return missing;
 		try {
-			//fist convert the map
-			Map<String, String> convertedPrefixes = serializePrefixes(prefixes);
-			String fileName = RES_FOLDER + PREFIXES;
-			FileOutputStream fos = new FileOutputStream(fileName);
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-			oos.writeObject(convertedPrefixes);
-			oos.close();
-		} catch (IOException e) {
-			e.printStackTrace();
+			return StateFile.read(file, decoder);
+		}
+		catch(IOException e){
+			new IOException("Couldn't load " + file.getPath(), e).printStackTrace();
+			return missing;
 		}
 	}
 
 	/**
-	 * saves the playlists in a file
-	 * @param playlists the list of playlists to be stored
+	 * encodes a store of a guild and marks it as dirty, it gets written in the background
+	 * @param guildId the id of the guild
+	 * @param fileName the name of the store
+	 * @param encoder writes the data of the store
 	 */
-	public static void savePlaylists(List<Playlist> playlists){
+	private static void writeGuildState(long guildId, String fileName, StateFile.Encoder encoder){
 		try {
-			String fileName = RES_FOLDER + PLAYLISTS;
-			FileOutputStream fos = new FileOutputStream(fileName);
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-			oos.writeObject(playlists);
-			oos.close();
-		} catch (IOException e) {
+			PERSISTENCE.markDirty(guildFile(guildId, fileName), StateFile.encode(encoder));
+		}
+		catch(IOException e){
 			e.printStackTrace();
 		}
 	}
 
 	/**
-	 * this saves the map of guilds linked to their musicChannels
-	 * @param musicChannels the map to be saved
+	 * writes a store of a guild right away, e.g.: if its journal is emptied after it
+	 * @param guildId the id of the guild
+	 * @param fileName the name of the store
+	 * @param encoder writes the data of the store
 	 */
-	public static void saveMusicChannels(Map<Guild, GuildMessageChannel> musicChannels, GatewayDiscordClient client){
+	private static void writeGuildStateNow(long guildId, String fileName, StateFile.Encoder encoder){
 		try {
-			//first convert the list into a map with the guild-id as key and the channel id as value,
-			//because the guild, and channel classes are not serializable
-			Map<String, String> serializedMusicChannel = serializeMusicChannels(musicChannels);
-
-			String fileName = RES_FOLDER + MUSIC_CHANNELS;
-			FileOutputStream fos = new FileOutputStream(fileName);
-			ObjectOutputStream oos = new ObjectOutputStream(fos);
-			oos.writeObject(serializedMusicChannel);
-			oos.close();
-		} catch (IOException e) {
+			StateFile.write(guildFile(guildId, fileName), encoder);
+		}
+		catch(IOException e){
 			e.printStackTrace();
 		}
 	}
 
-	//--------------------------------------------------end: save-methods--------------------------------------------------
+	/**
+	 * @return the service which writes the stores in the background, e.g.: for its metrics
+	 */
+	public static PersistenceService getPersistence(){
+		return PERSISTENCE;
+	}
 
-	//--------------------------------------------------serialize-methods--------------------------------------------------
+	private static File guildFolder(long guildId){
+		return new File(DATA_FOLDER, Long.toUnsignedString(guildId));
+	}
+
+	private static File guildFile(long guildId, String fileName){
+		return new File(guildFolder(guildId), fileName + STATE_SUFFIX);
+	}
+
+	private static StateJournal emojiReactorJournal(long guildId){
+		return EMOJI_REACTOR_JOURNALS.computeIfAbsent(guildId, id ->
+				new StateJournal(new File(guildFolder(id), EMOJI_REACTOR_NAMES + JOURNAL_SUFFIX), COMPACT_AFTER));
+	}
+
+	private static StateJournal emojiRoleJournal(long guildId){
+		return EMOJI_ROLE_JOURNALS.computeIfAbsent(guildId, id ->
+				new StateJournal(new File(guildFolder(id), EMOJI_ROLE_NAMES + JOURNAL_SUFFIX), COMPACT_AFTER));
+	}
+
+	//------------------------------------------------end: file-methods------------------------------------------------
+
+	//--------------------------------------------------journal-methods--------------------------------------------------
 
 	/**
-	 * this method makes the map of emoji roles into a mak of string representation of ids, so you can save the map
-	 * @param emojiRoles the map to be converted
-	 * @return returns the serializable map
-	 */
-	private static Map<String, Map<String, String>> serializeEmojiRoles(Map<Guild, Map<String, Role>> emojiRoles){
-		//first convert the map into a map with the guild, and roles replaced with its ids
-		//then save this map
-		Map<String, Map<String, String>> convertedEmojiRoles = new HashMap<>();
-		emojiRoles.forEach((guild, guildEmojiRoles) -> {
-			//first convert the guildEmojiRoles to the Map<String, String)
-			//basically mapping the guildEmojiRoles, to itself, but the role is represented by id
-			//and this done during the collect method
-			Map<String, String> convertedGuildEmojiRoles =  guildEmojiRoles.entrySet().stream()
-					.collect(Collectors.toMap(entry -> entry.getKey()
-							, entry -> entry.getValue().getId().asString()));
-			convertedEmojiRoles.put(guild.getId().asString(), convertedGuildEmojiRoles);
+	 * appends a reaction, or a removed one, to the journal of the emojiReactors of the guild
+	 * @param guildId the id of the guild
+	 * @param rawEmoji the raw emoji
+	 * @param memberId the id of the member
+	 * @param added if the member reacted, or removed the reaction
+	 * @return if the journal is too long, then the emojiReactors of the guild should be saved with saveEmojiReactors()
+	 */
+	public static boolean journalEmojiReactor(Snowflake guildId, String rawEmoji, Snowflake memberId, boolean added){
+		return emojiReactorJournal(guildId.asLong()).append(out -> {
+			out.writeInt(added ? REACTOR_ADDED : REACTOR_REMOVED);
+			out.writeLong(guildId.asLong());
+			out.writeString(rawEmoji);
+			out.writeLong(memberId.asLong());
 		});
-		return convertedEmojiRoles;
 	}
 
 	/**
-	 * this method makes the map of emoji roles into a mak of string representation of ids, so you can save the map
-	 * @param emojiReactors the map to be converted
-	 * @return returns the serializable map
+	 * appends to the journal of the emojiReactors of the guild, that all the reactions were removed
+	 * @param guildId the id of the guild
+	 * @return if the journal is too long, then the emojiReactors of the guild should be saved with saveEmojiReactors()
 	 */
-	private static Map<String, Map<String, List<String>>> serializeEmojiReactors(Map<Guild, Map<String, List<Member>>> emojiReactors){
-		//first convert the map into a map with the guild, and roles replaced with its ids
-		//then save this map
-
-		//you have to read this code from the inner loop to the outer ones
-		//so you first you have the guild, and the emoji, and you fill a list of embers who reacted to this emoji
-		//then you go out one loop, now you add for every guild, every emoji with its list of reactors
-		//and you do this for every guild
-		Map<String, Map<String, List<String>>> convertedEmojiRoles = new HashMap<>();
-		emojiReactors.forEach((guild, guildEmojiReactors) -> {
-
-			//for every guild add all the emojis with its reactors
-			final Map<String, List<String>> guildEmojiReactorIds = new HashMap<>();
-			guildEmojiReactors.forEach((rawEmoji, reactorsByEmoji) -> {
+	public static boolean journalEmojiReactorsCleared(Snowflake guildId){
+		return emojiReactorJournal(guildId.asLong()).append(out -> {
+			out.writeInt(REACTORS_CLEARED);
+			out.writeLong(guildId.asLong());
+		});
+	}
 
-				//for every guild and emoji get a list of all the reactors
-				final List<String> reactorIds = new LinkedList<>();
-				reactorsByEmoji.forEach(member -> reactorIds.add(member.getId().asString()));
-				guildEmojiReactorIds.put(rawEmoji, reactorIds);
-			});
-			convertedEmojiRoles.put(guild.getId().asString(), guildEmojiReactorIds);
+	/**
+	 * appends a new link of an emoji to a role to the journal of the emojiRoles of the guild
+	 * @param guildId the id of the guild
+	 * @param rawEmoji the raw emoji
+	 * @param roleId the id of the role
+	 * @return if the journal is too long, then the emojiRoles of the guild should be saved with saveEmojiRoles()
+	 */
+	public static boolean journalEmojiRole(Snowflake guildId, String rawEmoji, Snowflake roleId){
+		return emojiRoleJournal(guildId.asLong()).append(out -> {
+			out.writeInt(EMOJI_ROLE_SET);
+			out.writeLong(guildId.asLong());
+			out.writeString(rawEmoji);
+			out.writeLong(roleId.asLong());
+		});
+	}
 
+	/**
+	 * appends a removed link of an emoji to the journal of the emojiRoles of the guild
+	 * @param guildId the id of the guild
+	 * @param rawEmoji the raw emoji
+	 * @return if the journal is too long, then the emojiRoles of the guild should be saved with saveEmojiRoles()
+	 */
+	public static boolean journalEmojiRoleRemoved(Snowflake guildId, String rawEmoji){
+		return emojiRoleJournal(guildId.asLong()).append(out -> {
+			out.writeInt(EMOJI_ROLE_REMOVED);
+			out.writeLong(guildId.asLong());
+			out.writeString(rawEmoji);
 		});
-		return convertedEmojiRoles;
 	}
 
 	/**
-	 * this method makes a List of joinChannels, from the loaded file, which was saved as a map of 2 ids, (guild id, channel id)
-	 * @param joinChannels List to be converted
-	 * @return returns the serializable map
+	 * applies a record of the journal of the emojiReactors of a guild
+	 * a record can be replayed twice (e.g.: if the bot stopped before the journal was emptied), that doesn't change anything
 	 */
-	private static Map<String, String> serializeJoinChannels(List<GuildMessageChannel> joinChannels){
-		final Map<String, String> convertedJoinChannels = new HashMap<>();
-		//putting every channel into the map with its guild
-		joinChannels.forEach(channel -> convertedJoinChannels.put(channel.getGuildId().asString(), channel.getId().asString()));
-		return convertedJoinChannels;
+	private static void replayEmojiReactor(Map<String, ReactorSet> guildEmojiReactors, StateFile.Input in) throws IOException {
+		replayEmojiReactor(in, guildId -> guildEmojiReactors);
 	}
 
 	/**
-	 * serializes the prefix map
-	 * @param prefixes the prefix for each guild
-	 * @return returns the serialized form of the map (turns the guild into the guildId)
+	 * applies a record of a journal of the emojiReactors, to the reactors of the guild of the record
+	 * @param in the record
+	 * @param guildEmojiReactors the reactors of a guild, by the id of the guild
 	 */
-	private static Map<String, String> serializePrefixes(Map<Guild, String> prefixes){
-		final Map<String, String> convertedPrefixes = new HashMap<>();
-		//putting every channel into the map with its guild
-		prefixes.forEach((guild, prefix) -> convertedPrefixes.put(guild.getId().asString(), prefix));
-		return convertedPrefixes;
+	private static void replayEmojiReactor(StateFile.Input in, LongFunction<Map<String, ReactorSet>> guildEmojiReactors) throws IOException {
+		int type = in.readInt();
+		long guildId = in.readLong();
+		if(type == REACTORS_CLEARED){
+			guildEmojiReactors.apply(guildId).clear();
+			return;
+		}
+		String rawEmoji = in.readString();
+		long memberId = in.readLong();
+		ReactorSet reactors = guildEmojiReactors.apply(guildId).computeIfAbsent(rawEmoji, emoji -> new ReactorSet());
+		if(type == REACTOR_ADDED)
+			reactors.add(memberId);
+		else if(type == REACTOR_REMOVED)
+			reactors.remove(memberId);
+		else
+			throw new IOException("unknown record in the journal of the emojiReactors: " + type);
 	}
 
-	private static Map<String, String> serializeMusicChannels(Map<Guild, GuildMessageChannel> musicChannels){
-		final Map<String, String> serializedMusicChannels = new HashMap<>();
-		musicChannels.forEach((guild, channel) -> serializedMusicChannels.put(guild.getId().asString(), channel.getId().asString()));
-		return serializedMusicChannels;
+	/**
+	 * applies a record of the journal of the emojiRoles of a guild
+	 */
+	private static void replayEmojiRole(Map<String, Long> guildEmojiRoles, StateFile.Input in) throws IOException {
+		replayEmojiRole(in, guildId -> guildEmojiRoles);
 	}
-	//-------------------------------------------------end: serialize-methods-------------------------------------------------
 
-	//--------------------------------------------------deserialize-methods--------------------------------------------------
+	/**
+	 * applies a record of a journal of the emojiRoles, to the emojiRoles of the guild of the record
+	 * @param in the record
+	 * @param guildEmojiRoles the emojiRoles of a guild, by the id of the guild
+	 */
+	private static void replayEmojiRole(StateFile.Input in, LongFunction<Map<String, Long>> guildEmojiRoles) throws IOException {
+		int type = in.readInt();
+		long guildId = in.readLong();
+		String rawEmoji = in.readString();
+		if(type == EMOJI_ROLE_SET)
+			guildEmojiRoles.apply(guildId).put(rawEmoji, in.readLong());
+		else if(type == EMOJI_ROLE_REMOVED)
+			guildEmojiRoles.apply(guildId).remove(rawEmoji);
+		else
+			throw new IOException("unknown record in the journal of the emojiRoles: " + type);
+	}
+
+	//------------------------------------------------end: journal-methods------------------------------------------------
+
+	//--------------------------------------------------migration--------------------------------------------------
 
 	/**
-	 * this method converts a map of ids linked to another map of emojiStrings, with role ids as string
-	 * @param emojiRoleIds (guild id, (emoji, roleId)) all as strings
-	 * @param client the client, to get the guilds by id
-	 * @return returns the list
+	 * reads an old file (one for all guilds) into a map by the id of the guild
+	 * @param <T> the data of a guild
 	 */
-	private static Map<Guild, Map<String, Role>> deserializeEmojiRoles(Map<String, Map<String, String>> emojiRoleIds, GatewayDiscordClient client){
-		//first convert the map into a map with the guild, and roles replaced with its ids
-		//then save this map
-		Map<Guild, Map<String, Role>> emojiRoles = new HashMap<>();
-		emojiRoleIds.forEach((guildId, guildEmojiRolesIds) -> {
-			//get the find the guild by the id
-			try {
-				Guild guild = client.getGuildById(Snowflake.of(guildId)).block();
-				//now go through every emoji of this guild, and find the role for it
-				//and add them to the map below
-				final Map<String, Role> guildEmojiRoles = new HashMap<>();
-				guildEmojiRolesIds.forEach((rawEmoji, roleID) ->{
-					//finding the role, by first checking if it even exists
-					Optional<Role> optionalRole = guild.getRoleById(Snowflake.of(roleID)).blockOptional();
-					if(optionalRole.isEmpty()){
-						return;
-					}
-					Role role = optionalRole.get();
-					//now put this role into the converted map
-					guildEmojiRoles.put(rawEmoji, role);
-				});
-				//now the guildEmojiRoles map is filled, so add it to the emojiRoles map
-				emojiRoles.put(guild, guildEmojiRoles);
-			}
-			catch(ClientException ignored){
-				//if the guild was removed
-			}
+	private interface Migration<T> {
+		Map<Long, T> read(File file) throws IOException, ClassNotFoundException;
+	}
 
-		});
-		return emojiRoles;
+	/**
+	 * writes the data of a guild into its file
+	 * @param <T> the data of a guild
+	 */
+	private interface GuildEncoder<T> {
+		void encode(StateFile.Output out, T guildState) throws IOException;
 	}
 
 	/**
-	 * this method converts a map of ids linked to another map of emojiStrings, with role ids as string
-	 * @param emojiRoleIds (guild id, (emoji, roleId)) all as strings
-	 * @param client the client, to get the guilds by id
-	 * @return returns the list
+	 * migrates the old files (one file for all guilds) into the files of every guild
+	 * the files written with an ObjectOutputStream and the ones in the binary format (with their journals)
+	 * this only happens once, after that the old files are renamed (*.legacy, *.migrated)
+	 * if there are both, only the binary one is used, because it is newer
 	 */
-	private static Map<Guild, Map<String, List<Member>>> deserializeEmojiReactors(Map<String, Map<String, List<String>>> emojiRoleIds, GatewayDiscordClient client){
-		//first convert the map into a map with the guild, and roles replaced with its ids
-		//then save this map
-		Map<Guild, Map<String, List<Member>>> emojiReactors = new HashMap<>();
-		emojiRoleIds.forEach((guildId, guildEmojiReactorIds) -> {
-			//get the find the guild by the id
-			//get the find the guild by the id
-			try {
-				Guild guild = client.getGuildById(Snowflake.of(guildId)).block();
-				//now go through every emoji of this guild, and find the role for it
-				//and add them to the map below
-				final Map<String, List<Member>> guildEmojiReactors = new HashMap<>();
-				guildEmojiReactorIds.forEach((rawEmoji, memberIds) ->{
-					//getting the members and for each adding them
-					final List<Member> reactors = new LinkedList<>();
-					memberIds.forEach(memberId -> {
-						Optional<Member> optionalMember = guild.getMemberById(Snowflake.of(memberId)).blockOptional();
-						if(optionalMember.isEmpty()){
-							return;
-						}
-						Member member = optionalMember.get();
-						//now put this role into the converted map
-						reactors.add(member);
+	@SuppressWarnings("unchecked")
+	public static void migrateLegacyFiles(){
+		migrate(JOIN_CHANNEL_NAMES,
+				file -> parseIdMap((Map<String, String>) readLegacy(file)),
+				file -> StateFile.read(file, MemManager::decodeIdMap),
+				StateFile.Output::writeLong);
+		migrate(JOIN_MESSAGE_NAMES,
+				file -> parseIdMap((Map<String, String>) readLegacy(file)),
+				file -> StateFile.read(file, MemManager::decodeIdMap),
+				StateFile.Output::writeLong);
+		migrate(MUSIC_CHANNELS,
+				file -> parseIdMap((Map<String, String>) readLegacy(file)),
+				file -> StateFile.read(file, MemManager::decodeIdMap),
+				StateFile.Output::writeLong);
+		migrate(EMOJI_ROLE_NAMES,
+				file -> {
+					Map<Long, Map<String, Long>> emojiRoles = new HashMap<>();
+					((Map<String, Map<String, String>>) readLegacy(file)).forEach((guildId, guildEmojiRoles) -> {
+						Map<String, Long> roleIds = new HashMap<>();
+						guildEmojiRoles.forEach((rawEmoji, roleId) -> roleIds.put(rawEmoji, Snowflake.of(roleId).asLong()));
+						emojiRoles.put(Snowflake.of(guildId).asLong(), roleIds);
 					});
-					guildEmojiReactors.put(rawEmoji, reactors);
+					return emojiRoles;
+				},
+				file -> {
+					Map<Long, Map<String, Long>> emojiRoles = StateFile.read(file, MemManager::decodeEmojiRoles);
+					//the changes in the old journal since the file was written
+					new StateJournal(legacyJournal(EMOJI_ROLE_NAMES), Integer.MAX_VALUE)
+							.replay(in -> replayEmojiRole(in, guildId -> emojiRoles.computeIfAbsent(guildId, id -> new HashMap<>())));
+					return emojiRoles;
+				},
+				MemManager::encodeGuildEmojiRoles);
+		migrate(EMOJI_REACTOR_NAMES,
+				file -> {
+					Map<Long, Map<String, ReactorSet>> emojiReactors = new HashMap<>();
+					((Map<String, Map<String, List<String>>>) readLegacy(file)).forEach((guildId, guildEmojiReactors) -> {
+						Map<String, ReactorSet> reactors = new HashMap<>();
+						guildEmojiReactors.forEach((rawEmoji, memberIds) ->
+								reactors.put(rawEmoji, ReactorSet.of(memberIds.stream().mapToLong(id -> Snowflake.of(id).asLong()).toArray())));
+						emojiReactors.put(Snowflake.of(guildId).asLong(), reactors);
+					});
+					return emojiReactors;
+				},
+				file -> {
+					Map<Long, Map<String, ReactorSet>> emojiReactors = StateFile.read(file, MemManager::decodeEmojiReactors);
+					//the changes in the old journal since the file was written
+					//the counts don't match then anymore, so the reactors of these emojis get fetched once
+					new StateJournal(legacyJournal(EMOJI_REACTOR_NAMES), Integer.MAX_VALUE)
+							.replay(in -> replayEmojiReactor(in, guildId -> emojiReactors.computeIfAbsent(guildId, id -> new HashMap<>())));
+					return emojiReactors;
+				},
+				MemManager::encodeGuildEmojiReactors);
+		migrate(EMOJI_REACTOR_COUNTS,
+				file -> {
+					Map<Long, Map<String, long[]>> counts = new HashMap<>();
+					((Map<String, Map<String, long[]>>) readLegacy(file)).forEach((guildId, guildCounts) -> counts.put(Snowflake.of(guildId).asLong(), guildCounts));
+					return counts;
+				},
+				file -> StateFile.read(file, MemManager::decodeEmojiReactorCounts),
+				MemManager::encodeGuildEmojiReactorCounts);
+		migrate(PREFIXES,
+				file -> {
+					Map<Long, String> prefixes = new HashMap<>();
+					((Map<String, String>) readLegacy(file)).forEach((guildId, prefix) -> prefixes.put(Snowflake.of(guildId).asLong(), prefix));
+					return prefixes;
+				},
+				file -> StateFile.read(file, MemManager::decodePrefixes),
+				StateFile.Output::writeString);
+		migrate(PLAYLISTS,
+				file -> groupPlaylists((List<Playlist>) readLegacy(file)),
+				file -> groupPlaylists(StateFile.read(file, MemManager::decodePlaylists)),
+				MemManager::encodeGuildPlaylists);
+	}
 
-				});
-				//now the guildEmojiRoles map is filled, so add it to the emojiReactors map
-				emojiReactors.put(guild, guildEmojiReactors);
-			}
-			catch(ClientException ignored){
-				//if the guild was removed
+	/**
+	 * migrates a single store into the files of every guild, if there is an old file of it
+	 * @param fileName the name of the store
+	 * @param legacy reads the file written with an ObjectOutputStream
+	 * @param binary reads the file in the binary format
+	 * @param encoder writes the data of a guild
+	 */
+	private static <T> void migrate(String fileName, Migration<T> legacy, Migration<T> binary, GuildEncoder<T> encoder){
+		File legacyFile = new File(LEGACY_FOLDER + fileName);
+		File binaryFile = new File(LEGACY_FOLDER + fileName + STATE_SUFFIX);
+		if(!legacyFile.exists() && !binaryFile.exists())
+			return;
+		try {
+			Map<Long, T> guildStates = binaryFile.exists() ? binary.read(binaryFile) : legacy.read(legacyFile);
+			for(Map.Entry<Long, T> entry : guildStates.entrySet()){
+				File file = guildFile(entry.getKey(), fileName);
+				//a guild which is already in the new format is never overwritten
+				if(!file.exists())
+					StateFile.write(file, out -> encoder.encode(out, entry.getValue()));
 			}
+		}
+		catch(IOException | ClassNotFoundException | ClassCastException e){
+			//the old files stay, so they can be migrated again
+			new IOException("Couldn't migrate " + fileName, e).printStackTrace();
+			return;
+		}
+		rename(legacyFile, LEGACY_SUFFIX);
+		rename(binaryFile, MIGRATED_SUFFIX);
+		rename(legacyJournal(fileName), MIGRATED_SUFFIX);
+	}
 
-		});
-		return emojiReactors;
+	private static Object readLegacy(File file) throws IOException, ClassNotFoundException {
+		try(ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))){
+			ois.setObjectInputFilter(LEGACY_FILTER);
+			Object legacy = ois.readObject();
+			if(legacy == null)
+				throw new IOException("the file is empty");
+			return legacy;
+		}
+	}
+
+	private static void rename(File file, String suffix){
+		if(!file.exists())
+			return;
+		try {
+			Files.move(file.toPath(), new File(file.getPath() + suffix).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+
+	private static File legacyJournal(String fileName){
+		return new File(LEGACY_FOLDER + fileName + JOURNAL_SUFFIX);
+	}
+
+	private static Map<Long, Long> parseIdMap(Map<String, String> ids){
+		Map<Long, Long> parsed = new HashMap<>();
+		ids.forEach((key, value) -> parsed.put(Snowflake.of(key).asLong(), Snowflake.of(value).asLong()));
+		return parsed;
+	}
+
+	private static Map<Long, List<Playlist>> groupPlaylists(List<Playlist> playlists){
+		return playlists.stream().collect(Collectors.groupingBy(playlist -> Snowflake.of(playlist.getGuildId()).asLong()));
+	}
+
+	//------------------------------------------------end: migration------------------------------------------------
+
+	//--------------------------------------------------encode-methods--------------------------------------------------
+
+	private static long decodeId(StateFile.Input in, int version){
+		return in.readLong();
+	}
+
+	private static String decodePrefix(StateFile.Input in, int version) throws IOException {
+		return in.readString();
 	}
 
 	/**
-	 * this method converts a map of ids into a list of supposed JoinChannels (type: GuildMessageChannel)
-	 * @param joinChannelMap (guild id, channel id) both as strings
-	 * @param client the client, to get the guilds by id
-	 * @return returns the list
+	 * writes the (emoji, role id) of a guild
 	 */
-	private static List<GuildMessageChannel> deserializeJoinChannels(Map<String, String> joinChannelMap, GatewayDiscordClient client){
-		//now converting it into a list of channels
-		List<GuildMessageChannel> joinChannels = new ArrayList<>();
-		joinChannelMap.forEach((guildId, channelId) -> {
-			try {
-				Guild guild = client.getGuildById(Snowflake.of(guildId)).block();
-				GuildMessageChannel joinChannel = (GuildMessageChannel) guild.getChannels().filter(channel -> channel.getId().equals(Snowflake.of(channelId))).blockFirst();
+	private static void encodeGuildEmojiRoles(StateFile.Output out, Map<String, Long> guildEmojiRoles) throws IOException {
+		out.writeInt(guildEmojiRoles.size());
+		for(Map.Entry<String, Long> entry : guildEmojiRoles.entrySet()){
+			out.writeString(entry.getKey());
+			out.writeLong(entry.getValue());
+		}
+	}
 
-				if(joinChannel != null)
-					joinChannels.add(joinChannel);
-			}
-			catch(ClientException ignored){
-				//if the guild was removed
-			}
-		});
-		//finally convert the channels into GuildMessage
-		return joinChannels;
+	private static Map<String, Long> decodeGuildEmojiRoles(StateFile.Input in, int version) throws IOException {
+		int size = in.readSize();
+		Map<String, Long> guildEmojiRoles = new HashMap<>(size * 2);
+		for(int i = 0; i < size; i++)
+			guildEmojiRoles.put(in.readString(), in.readLong());
+		return guildEmojiRoles;
 	}
 
 	/**
-	 * gets the map of guilds from a map of guildIds
-	 * @param prefixGuildIds the map
-	 * @return returns the map of guilds with their prefixes
+	 * writes the (emoji, reactor ids) of a guild
 	 */
-	private static Map<Guild, String> deserializePrefixes(Map<String, String> prefixGuildIds, GatewayDiscordClient client){
-		//now converting it into a list of channels
-		Map<Guild, String> prefixes = new HashMap<>();
-		prefixGuildIds.forEach((guildId, prefix) -> {
-			try {
-				Guild guild = client.getGuildById(Snowflake.of(guildId)).block();
-				prefixes.put(guild, prefix);
-			}
-			catch(ClientException ignored){
-				//if the guild was removed
-			}
+	private static void encodeGuildEmojiReactors(StateFile.Output out, Map<String, ReactorSet> guildEmojiReactors) throws IOException {
+		out.writeInt(guildEmojiReactors.size());
+		for(Map.Entry<String, ReactorSet> entry : guildEmojiReactors.entrySet()){
+			out.writeString(entry.getKey());
+			out.writeIds(entry.getValue());
+		}
+	}
 
-		});
-		//finally convert the channels into GuildMessage
+	private static Map<String, ReactorSet> decodeGuildEmojiReactors(StateFile.Input in, int version) throws IOException {
+		int size = in.readSize();
+		Map<String, ReactorSet> guildEmojiReactors = new HashMap<>(size * 2);
+		for(int i = 0; i < size; i++)
+			guildEmojiReactors.put(in.readString(), in.readIds());
+		return guildEmojiReactors;
+	}
+
+	/**
+	 * writes the (emoji, {count, fingerprint}) of a guild
+	 */
+	private static void encodeGuildEmojiReactorCounts(StateFile.Output out, Map<String, long[]> guildCounts) throws IOException {
+		out.writeInt(guildCounts.size());
+		for(Map.Entry<String, long[]> entry : guildCounts.entrySet()){
+			out.writeString(entry.getKey());
+			out.writeLong(entry.getValue()[0]);
+			out.writeLong(entry.getValue()[1]);
+		}
+	}
+
+	private static Map<String, long[]> decodeGuildEmojiReactorCounts(StateFile.Input in, int version) throws IOException {
+		int size = in.readSize();
+		Map<String, long[]> guildCounts = new HashMap<>(size * 2);
+		for(int i = 0; i < size; i++)
+			guildCounts.put(in.readString(), new long[]{in.readLong(), in.readLong()});
+		return guildCounts;
+	}
+
+	/**
+	 * writes the playlists (name, songs) of a guild
+	 */
+	private static void encodeGuildPlaylists(StateFile.Output out, List<Playlist> playlists) throws IOException {
+		out.writeInt(playlists.size());
+		for(Playlist playlist : playlists){
+			out.writeString(playlist.getName());
+			out.writeInt(playlist.getSongs().size());
+			for(String song : playlist.getSongs())
+				out.writeString(song);
+		}
+	}
+
+	private static List<Playlist> decodeGuildPlaylists(StateFile.Input in, String guildId) throws IOException {
+		int size = in.readSize();
+		List<Playlist> playlists = new ArrayList<>(size);
+		for(int i = 0; i < size; i++){
+			String name = in.readString();
+			int songAmount = in.readSize();
+			List<String> songs = new ArrayList<>(songAmount);
+			for(int j = 0; j < songAmount; j++)
+				songs.add(in.readString());
+			playlists.add(new Playlist(name, songs, guildId));
+		}
+		return playlists;
+	}
+
+	//the formats of the old files for all guilds, only needed for the migration
+
+	private static Map<Long, Long> decodeIdMap(StateFile.Input in, int version) throws IOException {
+		int size = in.readSize();
+		Map<Long, Long> ids = new HashMap<>(size * 2);
+		for(int i = 0; i < size; i++)
+			ids.put(in.readLong(), in.readLong());
+		return ids;
+	}
+
+	private static Map<Long, Map<String, Long>> decodeEmojiRoles(StateFile.Input in, int version) throws IOException {
+		int guilds = in.readSize();
+		Map<Long, Map<String, Long>> emojiRoles = new HashMap<>(guilds * 2);
+		for(int i = 0; i < guilds; i++)
+			emojiRoles.put(in.readLong(), decodeGuildEmojiRoles(in, version));
+		return emojiRoles;
+	}
+
+	private static Map<Long, Map<String, ReactorSet>> decodeEmojiReactors(StateFile.Input in, int version) throws IOException {
+		int guilds = in.readSize();
+		Map<Long, Map<String, ReactorSet>> emojiReactors = new HashMap<>(guilds * 2);
+		for(int i = 0; i < guilds; i++)
+			emojiReactors.put(in.readLong(), decodeGuildEmojiReactors(in, version));
+		return emojiReactors;
+	}
+
+	private static Map<Long, Map<String, long[]>> decodeEmojiReactorCounts(StateFile.Input in, int version) throws IOException {
+		int guilds = in.readSize();
+		Map<Long, Map<String, long[]>> counts = new HashMap<>(guilds * 2);
+		for(int i = 0; i < guilds; i++)
+			counts.put(in.readLong(), decodeGuildEmojiReactorCounts(in, version));
+		return counts;
+	}
+
+	private static Map<Long, String> decodePrefixes(StateFile.Input in, int version) throws IOException {
+		int size = in.readSize();
+		Map<Long, String> prefixes = new HashMap<>(size * 2);
+		for(int i = 0; i < size; i++)
+			prefixes.put(in.readLong(), in.readString());
 		return prefixes;
 	}
 
-	private static Map<Guild, GuildMessageChannel> deserializeMusicChannels(Map<String, String> serializedMusicChannels, GatewayDiscordClient client){
-		final Map<Guild, GuildMessageChannel> deserializedMusicChannels = new HashMap<>();
-		serializedMusicChannels.forEach((guildId, channelId) -> {
-			try {
-				//first finding the guild
-				Guild guild = client.getGuildById(Snowflake.of(guildId)).block();
-				GuildMessageChannel channel = (GuildMessageChannel) guild.getChannelById(Snowflake.of(channelId)).block();
-				deserializedMusicChannels.put(guild, channel);
-			}
-			catch(ClientException ignored){
-				//if the guild/channel wasn't found then don't add the entry
-			}
+	private static List<Playlist> decodePlaylists(StateFile.Input in, int version) throws IOException {
+		int size = in.readSize();
+		List<Playlist> playlists = new ArrayList<>(size);
+		for(int i = 0; i < size; i++){
+			String name = in.readString();
+			String guildId = Long.toUnsignedString(in.readLong());
+			int songAmount = in.readSize();
+			List<String> songs = new ArrayList<>(songAmount);
+			for(int j = 0; j < songAmount; j++)
+				songs.add(in.readString());
+			playlists.add(new Playlist(name, songs, guildId));
+		}
+		return playlists;
+	}
 
-		});
-		return deserializedMusicChannels;
+	//------------------------------------------------end: encode-methods------------------------------------------------
+
+	//--------------------------------------------------serialize-methods--------------------------------------------------
+
+	/**
+	 * this method makes the emoji roles of a guild into a map of ids, so you can save the map
+	 * @param guildEmojiRoles the map to be converted
+	 * @return returns the map of (emoji, role id)
+	 */
+	private static Map<String, Long> serializeEmojiRoles(Map<String, Role> guildEmojiRoles){
+		//basically mapping the guildEmojiRoles, to itself, but the role is represented by id
+		Map<String, Long> convertedGuildEmojiRoles = new HashMap<>();
+		guildEmojiRoles.forEach((rawEmoji, role) -> convertedGuildEmojiRoles.put(rawEmoji, role.getId().asLong()));
+		return convertedGuildEmojiRoles;
+	}
+
+	/**
+	 * this method makes the count and fingerprint of the reactors of every emoji of a guild, to save them
+	 * @param guildEmojiReactors the reactors
+	 * @return returns the map of (emoji, {count, fingerprint})
+	 */
+	private static Map<String, long[]> serializeEmojiReactorCounts(Map<String, ReactorSet> guildEmojiReactors){
+		final Map<String, long[]> guildCounts = new HashMap<>();
+		guildEmojiReactors.forEach((rawEmoji, reactors) ->
+				guildCounts.put(rawEmoji, new long[]{reactors.size(), reactors.fingerprint()}));
+		return guildCounts;
+	}
+
+	//-------------------------------------------------end: serialize-methods-------------------------------------------------
+
+	//--------------------------------------------------deserialize-methods--------------------------------------------------
+
+	/**
+	 * this method converts a map of ids linked to another map of emojiStrings, with role ids
+	 * the guilds and roles are resolved at the same time (at most LOAD_CONCURRENCY at once)
+	 * and come from the cache of the gateway if they are in it, so only the missing ones are fetched
+	 * @param emojiRoleIds (guild id, (emoji, roleId))
+	 * @param client the client, to get the guilds by id
+	 * @return returns the list
+	 */
+	private static Map<Guild, Map<String, Role>> deserializeEmojiRoles(Map<Long, Map<String, Long>> emojiRoleIds, GatewayDiscordClient client){
+		return Flux.fromIterable(emojiRoleIds.entrySet())
+				.flatMap(guildEntry -> client.getGuildById(Snowflake.of(guildEntry.getKey()))
+						//now find the role of every emoji of this guild, a role which doesn't exist anymore is left out
+						.flatMap(guild -> Flux.fromIterable(guildEntry.getValue().entrySet())
+								.flatMap(entry -> guild.getRoleById(Snowflake.of(entry.getValue()))
+										.map(role -> Tuples.of(entry.getKey(), role))
+										//only this role is left out, the other roles of the guild stay
+										.onErrorResume(ClientException.class, e -> Mono.empty()), LOAD_CONCURRENCY)
+								.collectMap(Tuple2::getT1, Tuple2::getT2)
+								.map(guildEmojiRoles -> Tuples.of(guild, guildEmojiRoles)))
+						//if the guild was removed, the guild is left out (and its file stays)
+						.onErrorResume(ClientException.class, e -> Mono.empty()), LOAD_CONCURRENCY)
+				.collectMap(Tuple2::getT1, Tuple2::getT2)
+				.blockOptional()
+				.orElseGet(HashMap::new);
+	}
+
+	/**
+	 * this method converts a map of ids into a list of supposed JoinChannels (type: GuildMessageChannel)
+	 * the channels are fetched directly by their id (from the cache if they are in it), at most LOAD_CONCURRENCY at once
+	 * @param joinChannelMap (guild id, channel id)
+	 * @param client the client, to get the channels by id
+	 * @return returns the list
+	 */
+	private static List<GuildMessageChannel> deserializeJoinChannels(Map<Long, Long> joinChannelMap, GatewayDiscordClient client){
+		return Flux.fromIterable(joinChannelMap.values())
+				.flatMap(channelId -> client.getChannelById(Snowflake.of(channelId))
+						.ofType(GuildMessageChannel.class)
+						//if the guild or the channel was removed
+						.onErrorResume(ClientException.class, e -> Mono.empty()), LOAD_CONCURRENCY)
+				.collectList()
+				.blockOptional()
+				.orElseGet(ArrayList::new);
+	}
+
+	private static Map<Guild, GuildMessageChannel> deserializeMusicChannels(Map<Long, Long> serializedMusicChannels, GatewayDiscordClient client){
+		return Flux.fromIterable(serializedMusicChannels.entrySet())
+				.flatMap(entry -> client.getGuildById(Snowflake.of(entry.getKey()))
+						.flatMap(guild -> guild.getChannelById(Snowflake.of(entry.getValue()))
+								.ofType(GuildMessageChannel.class)
+								.map(channel -> Tuples.of(guild, channel)))
+						//if the guild/channel wasn't found then don't add the entry
+						.onErrorResume(ClientException.class, e -> Mono.empty()), LOAD_CONCURRENCY)
+				.collectMap(Tuple2::getT1, Tuple2::getT2)
+				.blockOptional()
+				.orElseGet(HashMap::new);
 	}
 
 	//------------------------------------------------end: deserialize-methods------------------------------------------------
@@ -0,0 +1,92 @@
+package discord.utility;
+
+import discord.logger.DiscordLogger;
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.channel.MessageChannel;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * this class sends messages to channels, but it collects the messages for a channel for a short time first
+ * and then sends them together as one message (as long as they fit into one)
+ * so e.g.: a requirement error and the "Unknown Command" message don't need two calls to discord
+ * which all count against the same rate limit of the channel
+ */
+public class OutboundMessageService {
+
+	//how long messages for a channel get collected before they are sent
+	public static final Duration DEFAULT_WINDOW = Duration.ofMillis(150);
+	//discord doesn't allow longer messages
+	private static final int MESSAGE_LIMIT = 2000;
+
+	private final GatewayDiscordClient client;
+	private final DiscordLogger logger;
+	private final Duration window;
+
+	//the messages which still have to be sent, by the id of the channel
+	private final Map<Snowflake, List<String>> pending = new ConcurrentHashMap<>();
+
+	public OutboundMessageService(GatewayDiscordClient client, DiscordLogger logger, Duration window){
+		this.client = client;
+		this.logger = logger;
+		this.window = window;
+	}
+
+	public OutboundMessageService(GatewayDiscordClient client, DiscordLogger logger){
+		this(client, logger, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * sends a message to a channel, together with the other messages for this channel in the next moment
+	 * @param channelId the id of the channel
+	 * @param content the content of the message
+	 */
+	public void send(Snowflake channelId, String content){
+		//the first message for a channel starts the timer, the others just get added
+		boolean[] first = {false};
+		pending.compute(channelId, (id, contents) -> {
+			if(contents == null){
+				contents = new ArrayList<>();
+				first[0] = true;
+			}
+			contents.add(content);
+			return contents;
+		});
+		if(first[0]){
+			Mono.delay(window).subscribe(ignored -> flush(channelId));
+		}
+	}
+
+	/**
+	 * sends all the collected messages of a channel, merged into as few messages as possible
+	 * @param channelId the id of the channel
+	 */
+	private void flush(Snowflake channelId){
+		//after the remove, new messages for the channel start a new timer
+		List<String> contents = pending.remove(channelId);
+		if(contents == null || contents.isEmpty())
+			return;
+		//every message gets its own line
+		List<String> lines = new ArrayList<>();
+		contents.forEach(content -> lines.add(content + "\n"));
+		Flux.fromIterable(Utility.splitIntoChunks(lines, MESSAGE_LIMIT))
+				.map(chunk -> chunk.endsWith("\n") ? chunk.substring(0, chunk.length() - 1) : chunk)
+				//keep the order of the messages
+				.concatMap(chunk -> createMessage(channelId, chunk))
+				.subscribe(null, error -> logger.log("Couldn't send a message to " + channelId.asString() + ": " + error.getMessage()));
+	}
+
+	private Mono<Message> createMessage(Snowflake channelId, String content){
+		return client.getChannelById(channelId)
+				.ofType(MessageChannel.class)
+				.flatMap(channel -> channel.createMessage(content));
+	}
+}
@@ -0,0 +1,194 @@
+package discord.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * this class writes the state files in the background, so the events and commands never wait for the disk
+ * a store only gets marked as dirty (with its already encoded bytes), and the dirty stores are written
+ * every few seconds, or earlier if a lot of stores were marked
+ * if a store is marked a few times before it was written, only the last version gets written (one write for a burst)
+ * when the bot stops, everything which is still dirty gets written by a shutdown hook
+ */
+public class PersistenceService {
+
+	//how often the dirty stores are written
+	public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(5);
+	//after this many marks, the dirty stores are written without waiting for the interval
+	public static final int DEFAULT_FLUSH_BATCH = 64;
+
+	//marks a file which has to be deleted instead of written
+	private static final byte[] DELETED = new byte[0];
+
+	private final int flushBatch;
+
+	//the bytes which still have to be written, by the file
+	private final Map<File, byte[]> dirty = new ConcurrentHashMap<>();
+	//the marks since the last flush
+	private final AtomicInteger marksSinceFlush = new AtomicInteger();
+	//the only thread which writes, so the writes of a file can't overtake each other
+	private final ScheduledExecutorService writer;
+
+	//the metrics
+	private final LongAdder marked = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	//how long the writing of a file took
+	private final LatencyHistogram writeTime = new LatencyHistogram();
+
+	/**
+	 * @param flushInterval how often the dirty stores are written
+	 * @param flushBatch after how many marks the dirty stores are written without waiting for the interval
+	 */
+	public PersistenceService(Duration flushInterval, int flushBatch){
+		this.flushBatch = flushBatch;
+		writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "persistence");
+			//the bot can stop without waiting for this thread, the shutdown hook writes the rest
+			thread.setDaemon(true);
+			return thread;
+		});
+		writer.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "persistence-shutdown"));
+	}
+
+	public PersistenceService(){
+		this(DEFAULT_FLUSH_INTERVAL, DEFAULT_FLUSH_BATCH);
+	}
+
+	/**
+	 * the interval and the batch can be set with the environment variables
+	 * PERSIST_INTERVAL_MS and PERSIST_BATCH, otherwise the defaults are used
+	 * a value which isn't a positive number is ignored, so a wrong setting can't stop the bot from starting
+	 * @return the service
+	 */
+	public static PersistenceService fromEnvironment(){
+		long intervalMillis = positiveSetting("PERSIST_INTERVAL_MS", DEFAULT_FLUSH_INTERVAL.toMillis());
+		int batch = (int) positiveSetting("PERSIST_BATCH", DEFAULT_FLUSH_BATCH);
+		return new PersistenceService(Duration.ofMillis(intervalMillis), batch);
+	}
+
+	/**
+	 * reads a setting which has to be a positive number
+	 * @param name the name of the environment variable
+	 * @param defaultValue the value if the variable isn't set or invalid
+	 * @return the value
+	 */
+	private static long positiveSetting(String name, long defaultValue){
+		String setting = System.getenv(name);
+		if(setting == null)
+			return defaultValue;
+		try {
+			long value = Long.parseLong(setting.trim());
+			if(value <= 0 || value > Integer.MAX_VALUE)
+				throw new IllegalArgumentException(name + " has to be between 1 and " + Integer.MAX_VALUE + ", but was " + value);
+			return value;
+		}
+		catch(NumberFormatException e){
+			new IllegalArgumentException(name + " is not a number: " + setting, e).printStackTrace();
+			return defaultValue;
+		}
+		catch(IllegalArgumentException e){
+			e.printStackTrace();
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * marks a store as dirty, it gets written with the next flush
+	 * @param file the file of the store
+	 * @param data the bytes of the whole file (encoded by the caller, so the state can't change while it's written)
+	 */
+	public void markDirty(File file, byte[] data){
+		marked.increment();
+		if(dirty.put(file, data) != null)
+			coalesced.increment();
+		if(marksSinceFlush.incrementAndGet() == flushBatch)
+			writer.execute(this::flush);
+	}
+
+	/**
+	 * marks a store to be deleted with the next flush (instead of written)
+	 * @param file the file of the store
+	 */
+	public void markDeleted(File file){
+		markDirty(file, DELETED);
+	}
+
+	/**
+	 * writes every dirty store, this is synchronized so the shutdown hook and the writer don't write at the same time
+	 */
+	public synchronized void flush(){
+		marksSinceFlush.set(0);
+		for(File file : new ArrayList<>(dirty.keySet())){
+			byte[] data = dirty.remove(file);
+			if(data == null)
+				continue;
+			long start = System.nanoTime();
+			try {
+				if(data == DELETED)
+					Files.deleteIfExists(file.toPath());
+				else
+					StateFile.writeBytes(file, data);
+				written.increment();
+				writeTime.recordNanos(System.nanoTime() - start);
+			}
+			catch(IOException e){
+				failed.increment();
+				e.printStackTrace();
+				//try it again with the next flush, unless there is a newer version already
+				dirty.putIfAbsent(file, data);
+			}
+		}
+	}
+
+	//getter for the metrics
+
+	/**
+	 * @return how many stores weren't written yet
+	 */
+	public int getDirty(){
+		return dirty.size();
+	}
+
+	public long getMarked(){
+		return marked.sum();
+	}
+
+	public long getCoalesced(){
+		return coalesced.sum();
+	}
+
+	public long getWritten(){
+		return written.sum();
+	}
+
+	public long getFailed(){
+		return failed.sum();
+	}
+
+	public LatencyHistogram getWriteTime(){
+		return writeTime;
+	}
+
+	/**
+	 * the metrics as a line of text, for the stats
+	 * @return the text
+	 */
+	public String render(){
+		return String.format("persistence: dirty %d, marked %d, coalesced %d, written %d, failed %d, write p50 %.1fms, p99 %.1fms%n",
+				getDirty(), getMarked(), getCoalesced(), getWritten(), getFailed(),
+				writeTime.percentileMicros(50) / 1000.0, writeTime.percentileMicros(99) / 1000.0);
+	}
+}
@@ -0,0 +1,201 @@
+package discord.utility;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * a set of raw snowflakes (e.g.: the ids of the members who reacted with an emoji)
+ * the ids are stored as a sorted array of primitive longs, so there are no Member objects, no boxing and no nodes
+ * 100.000 reactors only need ~800KB instead of 100.000 Member entities in a LinkedList
+ * a lookup is a binary search, and because both sets are sorted, union and difference are just one merge (O(n+m))
+ * the methods are synchronized, so the set can be changed from the event threads
+ */
+public class ReactorSet {
+
+	private static final long[] EMPTY = new long[0];
+	private static final int MIN_CAPACITY = 4;
+
+	//the ids, sorted and without duplicates, only the first size entries are used
+	private long[] ids;
+	private int size;
+
+	public ReactorSet(){
+		this(EMPTY, 0);
+	}
+
+	private ReactorSet(long[] ids, int size){
+		this.ids = ids;
+		this.size = size;
+	}
+
+	/**
+	 * makes a set out of ids
+	 * @param ids the ids, in any order and with duplicates
+	 * @return the set
+	 */
+	public static ReactorSet of(long... ids){
+		long[] sorted = ids.clone();
+		Arrays.sort(sorted);
+		//remove the duplicates
+		int size = 0;
+		for(int i = 0; i < sorted.length; i++){
+			if(size == 0 || sorted[size - 1] != sorted[i])
+				sorted[size++] = sorted[i];
+		}
+		return new ReactorSet(sorted, size);
+	}
+
+	/**
+	 * adds an id
+	 * @param id the raw snowflake
+	 * @return if the id wasn't in the set already
+	 */
+	public synchronized boolean add(long id){
+		int index = Arrays.binarySearch(ids, 0, size, id);
+		if(index >= 0)
+			return false;
+		int insertAt = -index - 1;
+		if(size == ids.length)
+			ids = Arrays.copyOf(ids, Math.max(MIN_CAPACITY, size + (size >> 1)));
+		System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+		ids[insertAt] = id;
+		size++;
+		return true;
+	}
+
+	/**
+	 * removes an id
+	 * @param id the raw snowflake
+	 * @return if the id was in the set
+	 */
+	public synchronized boolean remove(long id){
+		int index = Arrays.binarySearch(ids, 0, size, id);
+		if(index < 0)
+			return false;
+		System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+		size--;
+		//give the memory back if a lot of ids were removed
+		if(ids.length > MIN_CAPACITY && size < ids.length / 4)
+			ids = Arrays.copyOf(ids, Math.max(MIN_CAPACITY, size * 2));
+		return true;
+	}
+
+	public synchronized boolean contains(long id){
+		return Arrays.binarySearch(ids, 0, size, id) >= 0;
+	}
+
+	public synchronized int size(){
+		return size;
+	}
+
+	public synchronized boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * a copy of the set, which doesn't change if this set changes
+	 * @return the copy, without unused capacity
+	 */
+	public synchronized ReactorSet copy(){
+		return new ReactorSet(Arrays.copyOf(ids, size), size);
+	}
+
+	/**
+	 * @return the sorted ids
+	 */
+	public synchronized long[] toArray(){
+		return Arrays.copyOf(ids, size);
+	}
+
+	/**
+	 * goes through every id in ascending order (on a copy, so the set can be changed meanwhile)
+	 * @param action what to do with every id
+	 */
+	public void forEach(LongConsumer action){
+		for(long id : toArray())
+			action.accept(id);
+	}
+
+	/**
+	 * the ids which are in this set or the other one
+	 * @param other the other set
+	 * @return a new set
+	 */
+	public ReactorSet union(ReactorSet other){
+		long[] a = toArray();
+		long[] b = other.toArray();
+		long[] result = new long[a.length + b.length];
+		int i = 0, j = 0, size = 0;
+		while(i < a.length && j < b.length){
+			if(a[i] < b[j])
+				result[size++] = a[i++];
+			else if(a[i] > b[j])
+				result[size++] = b[j++];
+			else {
+				result[size++] = a[i++];
+				j++;
+			}
+		}
+		while(i < a.length)
+			result[size++] = a[i++];
+		while(j < b.length)
+			result[size++] = b[j++];
+		return new ReactorSet(Arrays.copyOf(result, size), size);
+	}
+
+	/**
+	 * the ids which are in this set but not in the other one
+	 * @param other the other set
+	 * @return a new set
+	 */
+	public ReactorSet difference(ReactorSet other){
+		long[] a = toArray();
+		long[] b = other.toArray();
+		long[] result = new long[a.length];
+		int i = 0, j = 0, size = 0;
+		while(i < a.length){
+			if(j == b.length || a[i] < b[j])
+				result[size++] = a[i++];
+			else if(a[i] > b[j])
+				j++;
+			else {
+				i++;
+				j++;
+			}
+		}
+		return new ReactorSet(Arrays.copyOf(result, size), size);
+	}
+
+	/**
+	 * a 64 bit hash of the ids, to check if two sets are the same without comparing them
+	 * (e.g.: if a saved set is still the same as the one it was saved with)
+	 * @return the fingerprint
+	 */
+	public synchronized long fingerprint(){
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < size; i++){
+			//mixing every id, so sets with a similar sum don't get the same fingerprint
+			long id = ids[i] * 0x9e3779b97f4a7c15L;
+			hash = (hash ^ (id ^ (id >>> 32))) * 0x100000001b3L;
+		}
+		return hash ^ size;
+	}
+
+	@Override
+	public boolean equals(Object o){
+		if(this == o)
+			return true;
+		if(!(o instanceof ReactorSet))
+			return false;
+		//the copies are made one after another, so two sets never wait for each other
+		return Arrays.equals(toArray(), ((ReactorSet) o).toArray());
+	}
+
+	@Override
+	public synchronized int hashCode(){
+		int hash = 1;
+		for(int i = 0; i < size; i++)
+			hash = 31 * hash + Long.hashCode(ids[i]);
+		return hash;
+	}
+}
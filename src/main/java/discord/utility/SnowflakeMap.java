@@ -0,0 +1,244 @@
+package discord.utility;
+
+import java.util.Map;
+
+/**
+ * a map with the raw long value of a snowflake (e.g.: a guild id) as the key
+ * the keys are stored as primitive longs (no boxing, no Guild objects as keys)
+ * and a lookup is just a few array accesses, so this can be used on every single message
+ * reads don't need a lock, the writes copy the table (they are rare, e.g.: when a prefix changes)
+ * the key 0 is not allowed, because it marks an empty slot (there is no snowflake with the value 0)
+ * @param <V> the type of the values
+ */
+public class SnowflakeMap<V> {
+
+	/**
+	 * used to go through every entry without boxing the key
+	 * @param <V> the type of the values
+	 */
+	public interface EntryConsumer<V> {
+		void accept(long key, V value);
+	}
+
+	//the table is replaced as a whole on every write, so a reader always sees a consistent table
+	private static final class Table {
+		private final long[] keys;
+		private final Object[] values;
+		private final int size;
+
+		private Table(int capacity, int size){
+			this(new long[capacity], new Object[capacity], size);
+		}
+
+		private Table(long[] keys, Object[] values, int size){
+			this.keys = keys;
+			this.values = values;
+			this.size = size;
+		}
+	}
+
+	private static final int MIN_CAPACITY = 16;
+
+	private volatile Table table;
+
+	public SnowflakeMap(){
+		table = new Table(MIN_CAPACITY, 0);
+	}
+
+	/**
+	 * gets the value of a key
+	 * @param key the raw snowflake
+	 * @return the value or null if there is no entry
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key){
+		Table t = table;
+		int slot = find(t.keys, key);
+		return slot < 0 ? null : (V) t.values[slot];
+	}
+
+	/**
+	 * gets the value of a key or a default value if there is no entry
+	 * @param key the raw snowflake
+	 * @param defaultValue the value if there is no entry
+	 * @return the value or the default value
+	 */
+	public V getOrDefault(long key, V defaultValue){
+		V value = get(key);
+		return value == null ? defaultValue : value;
+	}
+
+	public boolean containsKey(long key){
+		return find(table.keys, key) >= 0;
+	}
+
+	/**
+	 * puts an entry into the map
+	 * @param key the raw snowflake
+	 * @param value the value, not null
+	 * @return the old value or null if there was none
+	 */
+	public synchronized V put(long key, V value){
+		checkKey(key);
+		V old = get(key);
+		Table copy = copy(table, table.size + (old == null ? 1 : 0));
+		insert(copy, key, value);
+		table = copy;
+		return old;
+	}
+
+	/**
+	 * puts a lot of entries into the map at once (e.g.: the loaded ones)
+	 * a put copies the whole table, so this builds a single new table for all the entries instead
+	 * @param entries the values by the raw snowflakes, no value can be null
+	 */
+	public synchronized void putAll(Map<Long, ? extends V> entries){
+		if(entries.isEmpty())
+			return;
+		Table current = table;
+		//big enough even if every key is new
+		Table copy = new Table(capacityFor(current.size + entries.size()), current.size);
+		for(int i = 0; i < current.keys.length; i++){
+			if(current.keys[i] != 0)
+				insert(copy, current.keys[i], current.values[i]);
+		}
+		int added = 0;
+		for(Map.Entry<Long, ? extends V> entry : entries.entrySet()){
+			long key = entry.getKey();
+			checkKey(key);
+			if(find(copy.keys, key) == -1)
+				added++;
+			insert(copy, key, entry.getValue());
+		}
+		table = new Table(copy.keys, copy.values, current.size + added);
+	}
+
+	/**
+	 * puts an entry into the map, only if there is no entry for the key
+	 * @param key the raw snowflake
+	 * @param value the value, not null
+	 * @return the existing value or null if the value was put in
+	 */
+	public synchronized V putIfAbsent(long key, V value){
+		V old = get(key);
+		if(old == null)
+			put(key, value);
+		return old;
+	}
+
+	/**
+	 * removes an entry
+	 * @param key the raw snowflake
+	 * @return the removed value or null if there was none
+	 */
+	public synchronized V remove(long key){
+		V old = get(key);
+		if(old == null)
+			return null;
+		//just rebuild the table without the key, this way there are no tombstones
+		Table current = table;
+		Table copy = new Table(capacityFor(current.size - 1), current.size - 1);
+		for(int i = 0; i < current.keys.length; i++){
+			if(current.keys[i] != 0 && current.keys[i] != key)
+				insert(copy, current.keys[i], current.values[i]);
+		}
+		table = copy;
+		return old;
+	}
+
+	public int size(){
+		return table.size;
+	}
+
+	public boolean isEmpty(){
+		return size() == 0;
+	}
+
+	/**
+	 * goes through every entry of the map
+	 * @param consumer gets every key and its value
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> consumer){
+		Table t = table;
+		for(int i = 0; i < t.keys.length; i++){
+			if(t.keys[i] != 0)
+				consumer.accept(t.keys[i], (V) t.values[i]);
+		}
+	}
+
+	//----------------------------------------helper----------------------------------------
+
+	private static void checkKey(long key){
+		if(key == 0)
+			throw new IllegalArgumentException("0 is not a valid snowflake");
+	}
+
+	/**
+	 * the slot where the key is stored
+	 * @return the index or -1 if the key isn't in the table
+	 */
+	private static int find(long[] keys, long key){
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		//linear probing, the table is never full so this ends at an empty slot
+		while(keys[slot] != 0){
+			if(keys[slot] == key)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static void insert(Table t, long key, Object value){
+		int mask = t.keys.length - 1;
+		int slot = hash(key) & mask;
+		while(t.keys[slot] != 0 && t.keys[slot] != key){
+			slot = (slot + 1) & mask;
+		}
+		t.keys[slot] = key;
+		t.values[slot] = value;
+	}
+
+	private static Table copy(Table current, int newSize){
+		int capacity = capacityFor(newSize);
+		//if the capacity stays the same the arrays can just be copied
+		if(capacity == current.keys.length)
+			return new Table(current.keys.clone(), current.values.clone(), newSize);
+		Table copy = new Table(capacity, newSize);
+		for(int i = 0; i < current.keys.length; i++){
+			if(current.keys[i] != 0)
+				insert(copy, current.keys[i], current.values[i]);
+		}
+		return copy;
+	}
+
+	/**
+	 * the capacity is a power of 2 which keeps the table at most half full
+	 */
+	private static int capacityFor(int size){
+		int capacity = MIN_CAPACITY;
+		while(capacity < size * 2)
+			capacity <<= 1;
+		return capacity;
+	}
+
+	/**
+	 * snowflakes have the timestamp in the upper bits, so they have to be mixed before using them as an index
+	 */
+	private static int hash(long key){
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder builder = new StringBuilder("{");
+		forEach((key, value) -> {
+			if(builder.length() > 1)
+				builder.append(", ");
+			builder.append(key).append('=').append(value);
+		});
+		return builder.append('}').toString();
+	}
+}
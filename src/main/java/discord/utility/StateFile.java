@@ -0,0 +1,249 @@
+package discord.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * the binary format of the saved state (the prefixes, the emojiRoles, the reactors...)
+ * every file has a header with a magic number, the version of the format, the length and a checksum of the data
+ * so a file from an other program, a newer version or a file which was only written half is recognized and not used
+ * the data itself is written by the stores: ids as longs, and strings with their length in front (UTF-8)
+ * there are no classes in the file, so changing a class can't break the saved state (and nothing gets deserialized)
+ */
+public class StateFile {
+
+	//"SORA"
+	private static final int MAGIC = 0x534F5241;
+	//the current version of the format, if it changes the readers have to handle the older ones
+	public static final int VERSION = 1;
+	//magic, version, length, checksum
+	private static final int HEADER_SIZE = 4 + 1 + 4 + 4;
+	//a file is written into this file first, and then moved
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * writes the data of a store
+	 */
+	public interface Encoder {
+		void encode(Output out) throws IOException;
+	}
+
+	/**
+	 * reads the data of a store
+	 * @param <T> what is read
+	 */
+	public interface Decoder<T> {
+		T decode(Input in, int version) throws IOException;
+	}
+
+	private StateFile(){
+	}
+
+	/**
+	 * encodes the data and writes it with the header into a file
+	 * @param file the file
+	 * @param encoder writes the data
+	 * @throws IOException if the file couldn't be written
+	 */
+	public static void write(File file, Encoder encoder) throws IOException {
+		writeBytes(file, encode(encoder));
+	}
+
+	/**
+	 * writes already encoded bytes (see encode()) into a file
+	 * they are written into a temporary file first, which then replaces the file
+	 * so the file is always either the old or the new one, even if the bot stops while writing
+	 * @param file the file
+	 * @param data the bytes of the whole file
+	 * @throws IOException if the file couldn't be written
+	 */
+	public static void writeBytes(File file, byte[] data) throws IOException {
+		File folder = file.getParentFile();
+		if(folder != null && !folder.exists())
+			folder.mkdirs();
+		File temp = new File(file.getPath() + TEMP_SUFFIX);
+		try(FileOutputStream fos = new FileOutputStream(temp)){
+			fos.write(data);
+			//the data has to be on the disk before the file is replaced
+			fos.getFD().sync();
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(AtomicMoveNotSupportedException e){
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * encodes the data and puts the header in front of it, without writing it anywhere
+	 * @param encoder writes the data
+	 * @return the bytes of the whole file
+	 * @throws IOException if the encoder fails
+	 */
+	public static byte[] encode(Encoder encoder) throws IOException {
+		byte[] bytes = encodePayload(encoder);
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+		file.putInt(MAGIC)
+				.put((byte) VERSION)
+				.putInt(bytes.length)
+				.putInt((int) crc.getValue())
+				.put(bytes);
+		return file.array();
+	}
+
+	/**
+	 * encodes only the data, without the header (e.g.: for a record of a StateJournal)
+	 */
+	static byte[] encodePayload(Encoder encoder) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		Output out = new Output(new DataOutputStream(payload));
+		encoder.encode(out);
+		out.data.flush();
+		return payload.toByteArray();
+	}
+
+	/**
+	 * reads data without a header (e.g.: a record of a StateJournal)
+	 */
+	static Input input(ByteBuffer buffer){
+		return new Input(buffer);
+	}
+
+	/**
+	 * reads a file and decodes its data
+	 * @param file the file
+	 * @param decoder reads the data
+	 * @param <T> what is read
+	 * @return the decoded data
+	 * @throws IOException if the file couldn't be read, or if it isn't a valid state file
+	 */
+	public static <T> T read(File file, Decoder<T> decoder) throws IOException {
+		return decode(Files.readAllBytes(file.toPath()), decoder);
+	}
+
+	/**
+	 * checks the header of the bytes of a file and decodes its data
+	 * @param bytes the bytes of the whole file
+	 * @param decoder reads the data
+	 * @param <T> what is read
+	 * @return the decoded data
+	 * @throws IOException if it isn't a valid state file
+	 */
+	public static <T> T decode(byte[] bytes, Decoder<T> decoder) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		if(bytes.length < HEADER_SIZE || buffer.getInt() != MAGIC)
+			throw new IOException("not a state file");
+		int version = buffer.get();
+		if(version > VERSION)
+			throw new IOException("unknown version of the state file: " + version);
+		int length = buffer.getInt();
+		int checksum = buffer.getInt();
+		if(length != buffer.remaining())
+			throw new IOException("the state file is incomplete");
+		CRC32 crc = new CRC32();
+		crc.update(bytes, HEADER_SIZE, length);
+		if((int) crc.getValue() != checksum)
+			throw new IOException("the checksum of the state file is wrong");
+		try {
+			return decoder.decode(new Input(buffer), version);
+		}
+		catch(BufferUnderflowException e){
+			throw new IOException("the state file is too short", e);
+		}
+	}
+
+	/**
+	 * writes the data of a store
+	 */
+	public static class Output {
+		private final DataOutputStream data;
+
+		private Output(DataOutputStream data){
+			this.data = data;
+		}
+
+		public void writeInt(int value) throws IOException {
+			data.writeInt(value);
+		}
+
+		public void writeLong(long value) throws IOException {
+			data.writeLong(value);
+		}
+
+		/**
+		 * writes a string as UTF-8 with its length in front
+		 */
+		public void writeString(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			data.writeInt(bytes.length);
+			data.write(bytes);
+		}
+
+		/**
+		 * writes the ids of a set with the amount in front
+		 */
+		public void writeIds(ReactorSet ids) throws IOException {
+			long[] array = ids.toArray();
+			data.writeInt(array.length);
+			for(long id : array)
+				data.writeLong(id);
+		}
+	}
+
+	/**
+	 * reads the data of a store
+	 */
+	public static class Input {
+		private final ByteBuffer buffer;
+
+		private Input(ByteBuffer buffer){
+			this.buffer = buffer;
+		}
+
+		public int readInt(){
+			return buffer.getInt();
+		}
+
+		/**
+		 * reads an amount (e.g.: of entries), which can't be negative or bigger than the rest of the file
+		 */
+		public int readSize() throws IOException {
+			int size = buffer.getInt();
+			if(size < 0 || size > buffer.remaining())
+				throw new IOException("invalid size in the state file: " + size);
+			return size;
+		}
+
+		public long readLong(){
+			return buffer.getLong();
+		}
+
+		public String readString() throws IOException {
+			int length = readSize();
+			String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+			return value;
+		}
+
+		public ReactorSet readIds() throws IOException {
+			long[] ids = new long[readSize()];
+			for(int i = 0; i < ids.length; i++)
+				ids[i] = buffer.getLong();
+			return ReactorSet.of(ids);
+		}
+	}
+}
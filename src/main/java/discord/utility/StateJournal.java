@@ -0,0 +1,156 @@
+package discord.utility;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+
+/**
+ * an append-only file of single changes of a store (e.g.: "member x reacted with emoji y in guild z")
+ * so a change only writes a few bytes, instead of the whole store
+ * when the store is loaded, the changes get replayed on top of the last snapshot (StateFile) of the store
+ * after a while the journal gets too long, then the store should write a new snapshot and reset the journal (compaction)
+ * every record has its length and a checksum in front, so a record which was only written half (e.g.: a crash)
+ * is recognized, and it and everything after it gets cut off
+ */
+public class StateJournal {
+
+	//length, checksum
+	private static final int RECORD_HEADER_SIZE = 4 + 4;
+
+	/**
+	 * reads a single record
+	 */
+	public interface RecordReader {
+		void read(StateFile.Input in) throws IOException;
+	}
+
+	private final File file;
+	//after this many records a compaction is due
+	private final int compactAfter;
+
+	//the records since the last compaction
+	private int records;
+
+	/**
+	 * @param file the file of the journal
+	 * @param compactAfter after how many records a compaction is due
+	 */
+	public StateJournal(File file, int compactAfter){
+		this.file = file;
+		this.compactAfter = compactAfter;
+	}
+
+	/**
+	 * appends a record to the journal
+	 * @param encoder writes the record
+	 * @return if the journal is too long and the store should write a snapshot (and then reset the journal)
+	 */
+	public synchronized boolean append(StateFile.Encoder encoder){
+		try {
+			byte[] payload = StateFile.encodePayload(encoder);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+			record.putInt(payload.length)
+					.putInt((int) crc.getValue())
+					.put(payload);
+			//the file is only open while appending, so a lot of journals (e.g.: one per guild) don't keep a lot of files open
+			File folder = file.getParentFile();
+			if(folder != null && !folder.exists())
+				folder.mkdirs();
+			try(OutputStream out = new FileOutputStream(file, true)){
+				//one write for the whole record, so it is either written or not
+				out.write(record.array());
+			}
+			records++;
+		}
+		catch(IOException e){
+			//if the record couldn't be written, a snapshot saves the change instead
+			e.printStackTrace();
+			return true;
+		}
+		return records >= compactAfter;
+	}
+
+	/**
+	 * reads every record of the journal, in the order they were written
+	 * a broken record at the end gets cut off, so new records are appended after the last valid one
+	 * @param reader reads a single record
+	 * @return the amount of records
+	 */
+	public synchronized int replay(RecordReader reader){
+		if(!file.exists())
+			return 0;
+		int replayed = 0;
+		int validLength = 0;
+		try {
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while(buffer.remaining() >= RECORD_HEADER_SIZE){
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				if(length < 0 || length > buffer.remaining())
+					break;
+				CRC32 crc = new CRC32();
+				crc.update(bytes, buffer.position(), length);
+				if((int) crc.getValue() != checksum)
+					break;
+				ByteBuffer payload = ByteBuffer.wrap(bytes, buffer.position(), length).slice();
+				try {
+					reader.read(StateFile.input(payload));
+				}
+				catch(BufferUnderflowException e){
+					break;
+				}
+				catch(IOException e){
+					//a record which can't be read (e.g.: an unknown kind) is handled like a broken one
+					//so it and everything after it gets cut off, instead of being read again at every start
+					new IOException("Couldn't read a record of " + file.getName() + ", it gets cut off", e).printStackTrace();
+					break;
+				}
+				buffer.position(buffer.position() + length);
+				validLength = buffer.position();
+				replayed++;
+			}
+			if(validLength < bytes.length)
+				truncate(validLength);
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+		records = replayed;
+		return replayed;
+	}
+
+	/**
+	 * empties the journal, this has to be done after the store wrote a snapshot with all the changes
+	 */
+	public synchronized void reset(){
+		truncate(0);
+		records = 0;
+	}
+
+	/**
+	 * @return the amount of records since the last compaction
+	 */
+	public synchronized int getRecords(){
+		return records;
+	}
+
+	private void truncate(long length){
+		if(!file.exists())
+			return;
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+			raf.setLength(length);
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+}
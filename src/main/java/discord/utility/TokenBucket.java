@@ -0,0 +1,80 @@
+package discord.utility;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a token bucket without a lock and without a timer
+ * instead of counting tokens and refilling them every x seconds, it only stores the time when the bucket is full again
+ * taking a token moves this time one interval into the future, and if it would be too far ahead the bucket is empty
+ * so the refilling happens lazily, just by time passing
+ */
+public class TokenBucket {
+
+	//the time in nanos it takes to refill one token
+	private final long interval;
+	//how far the "full again" time may be ahead of now, this is the size of the bucket
+	private final long capacityNanos;
+	//the time (System.nanoTime()) when the bucket is full again
+	private final AtomicLong fullAt;
+
+	/**
+	 * @param capacity the maximum amount of tokens (how many can be taken at once)
+	 * @param refillTime the time it takes to refill a single token
+	 */
+	public TokenBucket(int capacity, Duration refillTime){
+		this.interval = refillTime.toNanos();
+		this.capacityNanos = interval * capacity;
+		//the bucket starts full, the time lies a bit in the past, so a "now" taken before the bucket was created still finds it full
+		this.fullAt = new AtomicLong(System.nanoTime() - capacityNanos);
+	}
+
+	/**
+	 * tries to take a token
+	 * @param now the current time (System.nanoTime())
+	 * @return if there was a token
+	 */
+	public boolean tryAcquire(long now){
+		while(true){
+			long current = fullAt.get();
+			//if the bucket is already full, start from now
+			long next = Math.max(current, now) + interval;
+			if(next - now > capacityNanos)
+				return false;
+			if(fullAt.compareAndSet(current, next))
+				return true;
+			//if some other thread took a token in the meantime, just try again
+		}
+	}
+
+	public boolean tryAcquire(){
+		return tryAcquire(System.nanoTime());
+	}
+
+	/**
+	 * gives back a token which was taken, e.g.: if the action needed tokens of other buckets too and one of them was empty
+	 * this can't make the bucket fuller than its capacity, because a "full again" time in the past counts as now
+	 */
+	public void refund(){
+		fullAt.addAndGet(-interval);
+	}
+
+	/**
+	 * the time until the next token is available
+	 * @param now the current time (System.nanoTime())
+	 * @return the time in nanos, 0 if there is a token right now
+	 */
+	public long nanosUntilToken(long now){
+		long next = Math.max(fullAt.get(), now) + interval;
+		return Math.max(0, next - now - capacityNanos);
+	}
+
+	/**
+	 * checks if the bucket is full, then it doesn't have to be stored anymore
+	 * @param now the current time (System.nanoTime())
+	 * @return if the bucket is full
+	 */
+	public boolean isFull(long now){
+		return fullAt.get() - now <= 0;
+	}
+}
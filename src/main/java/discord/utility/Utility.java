@@ -63,6 +63,35 @@ public class Utility {
 		return reversed;
 	}
 
+	/**
+	 * this method joins lines together into chunks, where each chunk is at most maxLength long
+	 * the lines are kept as a whole, except if a single line is too long, then it gets cut
+	 * e.g.: to split up a text which is too long for a single discord message
+	 * @param lines the lines (with their line breaks)
+	 * @param maxLength the maximum length of a chunk
+	 * @return returns the chunks, at least one (empty) chunk
+	 */
+	public static List<String> splitIntoChunks(List<String> lines, int maxLength){
+		final List<String> chunks = new ArrayList<>();
+		StringBuilder chunk = new StringBuilder();
+		for(String line : lines){
+			//if the line doesn't fit into the current chunk anymore, start a new one
+			if(chunk.length() + line.length() > maxLength && chunk.length() > 0){
+				chunks.add(chunk.toString());
+				chunk = new StringBuilder();
+			}
+			//a line which is too long on its own gets cut into pieces
+			while(line.length() > maxLength){
+				chunks.add(line.substring(0, maxLength));
+				line = line.substring(maxLength);
+			}
+			chunk.append(line);
+		}
+		if(chunk.length() > 0 || chunks.isEmpty())
+			chunks.add(chunk.toString());
+		return chunks;
+	}
+
 	/**
 	 * this method gets the keys of a map
 	 * @param map the map